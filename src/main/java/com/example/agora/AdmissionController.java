@@ -0,0 +1,186 @@
+package com.example.agora;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of token builds running at once and sheds the rest.
+ * <p>
+ * The cap adapts to the observed build latency (additive increase, multiplicative decrease):
+ * every build that finishes within the target latency raises the limit by 1/limit, so it grows by
+ * about one per limit builds, and a slow or failed build cuts it by 10%, at most once per
+ * {@value #DECREASE_INTERVAL_MILLIS} ms. Work beyond the limit fails immediately with a
+ * {@link TokenRejectedException} whose reason is {@link TokenRejectedException.Reason#OVERLOADED},
+ * so queues do not build up and latency stays bounded for the requests that are admitted.
+ * <p>
+ * It guards {@link AgoraTokenService} when installed with
+ * {@link AgoraTokenService#setAdmissionController(AdmissionController)}, and any builder call
+ * through {@link #execute(Supplier)}.
+ */
+public class AdmissionController {
+    private static final long DECREASE_INTERVAL_MILLIS = 50;
+    private static final double DECREASE_FACTOR = 0.9;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limitBits;
+    private final AtomicLong lastDecreaseAt = new AtomicLong(System.nanoTime());
+    private final int minimumLimit;
+    private final int maximumLimit;
+    private final long targetLatencyNanos;
+    private volatile long averageLatencyNanos;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates an admission controller.
+     *
+     * @param initialLimit        The initial number of concurrent builds allowed
+     * @param minimumLimit        The lowest the limit can fall to
+     * @param maximumLimit        The highest the limit can grow to
+     * @param targetLatencyMicros The build latency, in microseconds, above which the limit is cut
+     */
+    public AdmissionController(int initialLimit, int minimumLimit, int maximumLimit, long targetLatencyMicros) {
+        if (minimumLimit <= 0 || maximumLimit < minimumLimit) {
+            throw new IllegalArgumentException("limits must satisfy 0 < minimumLimit <= maximumLimit");
+        }
+        if (initialLimit < minimumLimit || initialLimit > maximumLimit) {
+            throw new IllegalArgumentException("initialLimit must be between minimumLimit and maximumLimit");
+        }
+        if (targetLatencyMicros <= 0) {
+            throw new IllegalArgumentException("targetLatencyMicros must be positive");
+        }
+        this.limitBits = new AtomicLong(Double.doubleToLongBits(initialLimit));
+        this.minimumLimit = minimumLimit;
+        this.maximumLimit = maximumLimit;
+        this.targetLatencyNanos = TimeUnit.MICROSECONDS.toNanos(targetLatencyMicros);
+    }
+
+    /**
+     * Creates a controller that starts at two builds per processor, may go down to one per
+     * processor and up to 64 per processor, and targets 5 ms per build.
+     *
+     * @return The controller
+     */
+    public static AdmissionController createDefault() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return new AdmissionController(processors * 2, processors, processors * 64, 5000);
+    }
+
+    /**
+     * Admits a build if fewer builds than the limit are running. An admitted build must be
+     * reported with {@link #release(long, boolean)}.
+     *
+     * @return Whether the build was admitted
+     */
+    public boolean tryAcquire() {
+        int limit = getLimit();
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                admitted.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reports the end of an admitted build and adapts the limit.
+     *
+     * @param latencyNanos How long the build took
+     * @param failed       Whether the build failed
+     */
+    public void release(long latencyNanos, boolean failed) {
+        inFlight.decrementAndGet();
+        long average = averageLatencyNanos;
+        averageLatencyNanos = average + ((latencyNanos - average) >> 4);
+
+        if (failed || latencyNanos > targetLatencyNanos) {
+            long now = System.nanoTime();
+            long last = lastDecreaseAt.get();
+            if (now - last >= TimeUnit.MILLISECONDS.toNanos(DECREASE_INTERVAL_MILLIS) && lastDecreaseAt.compareAndSet(last, now)) {
+                updateLimit(limit -> Math.max(minimumLimit, limit * DECREASE_FACTOR));
+            }
+        } else {
+            updateLimit(limit -> Math.min(maximumLimit, limit + 1 / limit));
+        }
+    }
+
+    /**
+     * Runs a build if it is admitted.
+     *
+     * @param build The build
+     * @param <T>   The result type
+     * @return The result of the build
+     * @throws TokenRejectedException If the build was not admitted
+     */
+    public <T> T execute(Supplier<T> build) {
+        if (!tryAcquire()) {
+            throw new TokenRejectedException(TokenRejectedException.Reason.OVERLOADED,
+                    "token issuance is overloaded (" + inFlight.get() + " builds in flight)");
+        }
+        long startedAt = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = build.get();
+            failed = false;
+            return result;
+        } finally {
+            release(System.nanoTime() - startedAt, failed);
+        }
+    }
+
+    /**
+     * @return The current number of concurrent builds allowed
+     */
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    /**
+     * @return The number of builds running
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return Whether new builds are currently being rejected
+     */
+    public boolean isOverloaded() {
+        return inFlight.get() >= getLimit();
+    }
+
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return The moving average build latency, in microseconds
+     */
+    public double getAverageLatencyMicros() {
+        return averageLatencyNanos / 1000.0;
+    }
+
+    private void updateLimit(DoubleUnaryOperator update) {
+        while (true) {
+            long bits = limitBits.get();
+            long updated = Double.doubleToLongBits(update.applyAsDouble(Double.longBitsToDouble(bits)));
+            if (bits == updated || limitBits.compareAndSet(bits, updated)) {
+                return;
+            }
+        }
+    }
+}
@@ -1,14 +1,46 @@
 package com.example.agora;
-import io.agora.media.RtcTokenBuilder2;
+import io.agora.media.AccessToken2;
+import io.agora.media.AccessToken2Codec;
+import io.agora.media.AppCredentials;
+import io.agora.media.CodecPool;
+import io.agora.media.Histogram;
+import io.agora.media.RotatingCredentials;
 import io.agora.media.RtcTokenBuilder2.Role;
+import io.agora.media.TokenMetrics;
+import io.agora.media.UsageCounters;
+import io.agora.media.Utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * Service class for generating Agora RTC tokens.
  * This class provides methods to generate tokens for both UID-based and user account-based authentication.
  */
 public class AgoraTokenService {
-    private final String appId;
-    private final String appCertificate;
+    private final RotatingCredentials credentials;
+    private final SingleFlight<TokenRequestKey, String> inFlight = new SingleFlight<>();
+    private volatile IssuedTokenCache tokenCache;
+    private volatile boolean coalescing;
+    private volatile MeetingPrefetcher meetingPrefetcher;
+    private volatile TokenExecutor executor;
+    private volatile CodecPool codecPool = CodecPool.createDefault();
+    private volatile TokenEventSink eventSink = TokenEventSink.NONE;
+    private volatile RateLimiter userRateLimiter;
+    private volatile RateLimiter channelRateLimiter;
+    private volatile AdmissionController admissionController;
+    private volatile UsageCounters usageCounters;
+    private final LongAdder issued = new LongAdder();
+    private final Histogram buildLatency = new Histogram();
 
     /**
      * Creates a new AgoraTokenService with the specified credentials.
@@ -17,8 +49,223 @@ public class AgoraTokenService {
      * @param appCertificate Your Agora App Certificate
      */
     public AgoraTokenService(String appId, String appCertificate) {
-        this.appId = appId;
-        this.appCertificate = appCertificate;
+        this(Utils.isUUID(appId) && Utils.isUUID(appCertificate) ? new AppCredentials(appId, appCertificate) : null);
+    }
+
+    /**
+     * Creates a new AgoraTokenService with credentials validated in advance.
+     *
+     * @param credentials The credentials, or null if they are invalid (tokens are then empty)
+     */
+    public AgoraTokenService(AppCredentials credentials) {
+        this(credentials == null ? null : new RotatingCredentials(credentials));
+    }
+
+    /**
+     * Creates a new AgoraTokenService whose App Certificate can be rotated while it issues tokens.
+     *
+     * @param credentials The rotating credentials, or null if they are invalid (tokens are then empty)
+     */
+    public AgoraTokenService(RotatingCredentials credentials) {
+        this.credentials = credentials;
+    }
+
+    /**
+     * @return The credentials tokens are signed with now, or null if they are invalid
+     */
+    public AppCredentials getCredentials() {
+        return credentials == null ? null : credentials.current();
+    }
+
+    /**
+     * @return The rotating credentials, through which the App Certificate is rotated, or null if they are invalid
+     */
+    public RotatingCredentials getRotation() {
+        return credentials;
+    }
+
+    /**
+     * Enables caching of issued tokens, so identical requests (same channel, user, role and
+     * expiration) reuse a token while enough of its lifetime is left.
+     *
+     * @param tokenCache The cache to use, or null to disable caching (the default)
+     */
+    public void setTokenCache(IssuedTokenCache tokenCache) {
+        this.tokenCache = tokenCache;
+    }
+
+    /**
+     * @return The token cache, or null if caching is disabled
+     */
+    public IssuedTokenCache getTokenCache() {
+        return tokenCache;
+    }
+
+    /**
+     * Enables coalescing of identical concurrent requests: while a token for a request is being
+     * built, identical requests wait for it and share it instead of building their own.
+     *
+     * @param coalescing Whether to coalesce identical concurrent requests (disabled by default)
+     */
+    public void setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * @return The in-flight request tracker, with counts of executed and shared builds
+     */
+    public SingleFlight<TokenRequestKey, String> getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Serves meeting tokens prefetched for scheduled meetings before building new ones.
+     *
+     * @param meetingPrefetcher The prefetcher, or null to disable prefetching (the default)
+     */
+    public void setMeetingPrefetcher(MeetingPrefetcher meetingPrefetcher) {
+        this.meetingPrefetcher = meetingPrefetcher;
+    }
+
+    /**
+     * @return The meeting prefetcher, or null if prefetching is disabled
+     */
+    public MeetingPrefetcher getMeetingPrefetcher() {
+        return meetingPrefetcher;
+    }
+
+    /**
+     * Sets the executor the asynchronous methods build tokens on.
+     *
+     * @param executor The executor, or null to use {@link TokenExecutor#createDefault()}
+     */
+    public void setExecutor(TokenExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return The executor the asynchronous methods build tokens on, created on first use
+     */
+    public TokenExecutor getExecutor() {
+        TokenExecutor current = executor;
+        if (current == null) {
+            synchronized (this) {
+                current = executor;
+                if (current == null) {
+                    current = TokenExecutor.createDefault();
+                    executor = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return The executor if one was set or created, without creating one
+     */
+    TokenExecutor currentExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the pool single tokens are encoded with. Codecs are taken from the pool rather than
+     * kept per thread, so asynchronous builds on virtual threads reuse codecs instead of creating
+     * one per request.
+     *
+     * @param codecPool The pool, or null for a new default pool
+     */
+    public void setCodecPool(CodecPool codecPool) {
+        this.codecPool = codecPool == null ? CodecPool.createDefault() : codecPool;
+    }
+
+    public CodecPool getCodecPool() {
+        return codecPool;
+    }
+
+    /**
+     * Sets where issuance events go. The sink is called on the issuing thread, so it should hand
+     * events off without blocking, as {@link AsyncTokenEventSink} does.
+     *
+     * @param eventSink The sink, or null to discard events (the default)
+     */
+    public void setEventSink(TokenEventSink eventSink) {
+        this.eventSink = eventSink == null ? TokenEventSink.NONE : eventSink;
+    }
+
+    public TokenEventSink getEventSink() {
+        return eventSink;
+    }
+
+    /**
+     * Limits how often tokens are issued per user. Requests over quota are served a cached token
+     * that has not expired yet if there is one, and rejected with a {@link TokenRejectedException}
+     * otherwise. UID 0 requests are not limited per user, as they do not identify one.
+     * Prefetched meeting tokens and rosters are not limited.
+     *
+     * @param userRateLimiter The limiter keyed by user account or UID string, or null for no limit (the default)
+     */
+    public void setUserRateLimiter(RateLimiter userRateLimiter) {
+        this.userRateLimiter = userRateLimiter;
+    }
+
+    public RateLimiter getUserRateLimiter() {
+        return userRateLimiter;
+    }
+
+    /**
+     * Limits how often tokens are issued per channel, as {@link #setUserRateLimiter(RateLimiter)} does per user.
+     *
+     * @param channelRateLimiter The limiter keyed by channel name, or null for no limit (the default)
+     */
+    public void setChannelRateLimiter(RateLimiter channelRateLimiter) {
+        this.channelRateLimiter = channelRateLimiter;
+    }
+
+    public RateLimiter getChannelRateLimiter() {
+        return channelRateLimiter;
+    }
+
+    /**
+     * Sheds token builds beyond an adaptive concurrency limit. Rejected requests fail with a
+     * {@link TokenRejectedException} whose reason is OVERLOADED. Cache hits and prefetched meeting
+     * tokens do not build anything and are always served; each token of a roster is admitted as
+     * one build, and a roster fails as a whole if any of its tokens is rejected.
+     *
+     * @param admissionController The controller, or null to admit every build (the default)
+     */
+    public void setAdmissionController(AdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    /**
+     * Counts the tokens issued per App ID and channel, including those served from the token cache.
+     *
+     * @param usageCounters The counters, or null to count nothing (the default)
+     */
+    public void setUsageCounters(UsageCounters usageCounters) {
+        this.usageCounters = usageCounters;
+    }
+
+    public UsageCounters getUsageCounters() {
+        return usageCounters;
+    }
+
+    /**
+     * @return The number of tokens issued, including those served from the token cache
+     */
+    public long getIssuedCount() {
+        return issued.sum();
+    }
+
+    /**
+     * @return The latency of token builds, in nanoseconds, with one sample per token of a roster
+     */
+    public Histogram getBuildLatency() {
+        return buildLatency;
     }
 
     /**
@@ -31,9 +278,8 @@ public class AgoraTokenService {
      * @return The generated token
      */
     public String generateRtcToken(String channelName, int uid, Role role, int expireSeconds) {
-        RtcTokenBuilder2 tokenBuilder = new RtcTokenBuilder2();
-        String token = tokenBuilder.buildTokenWithUid(appId, appCertificate, channelName, uid, role, expireSeconds, expireSeconds);
-        System.out.println("UID-based token: UID=" + uid + ", Channel=" + channelName + ", Expires=" + expireSeconds + "s");
+        String token = issueRtcToken(channelName, AccessToken2.getUidStr(uid), role, expireSeconds);
+        publishIssued(TokenIssuedEvent.Kind.UID, channelName, String.valueOf(uid), role, expireSeconds, 1);
         return token;
     }
 
@@ -47,9 +293,8 @@ public class AgoraTokenService {
      * @return The generated token
      */
     public String generateRtcTokenWithUserAccount(String channelName, String userAccount, Role role, int expireSeconds) {
-        RtcTokenBuilder2 tokenBuilder = new RtcTokenBuilder2();
-        String token = tokenBuilder.buildTokenWithUserAccount(appId, appCertificate, channelName, userAccount, role, expireSeconds, expireSeconds);
-        System.out.println("UserAccount-based token: User=" + userAccount + ", Channel=" + channelName + ", Expires=" + expireSeconds + "s");
+        String token = issueRtcToken(channelName, userAccount, role, expireSeconds);
+        publishIssued(TokenIssuedEvent.Kind.USER_ACCOUNT, channelName, userAccount, role, expireSeconds, 1);
         return token;
     }
 
@@ -63,6 +308,11 @@ public class AgoraTokenService {
      * @return The generated token
      */
     public String generateMeetingToken(String channelName, int uid, int durationMinutes) {
+        String prefetched = getPrefetchedToken(channelName, AccessToken2.getUidStr(uid), durationMinutes);
+        if (prefetched != null) {
+            publishIssued(TokenIssuedEvent.Kind.UID, channelName, String.valueOf(uid), Role.ROLE_PUBLISHER, durationMinutes * 60, 1);
+            return prefetched;
+        }
         int expireSeconds = durationMinutes * 60;
         return generateRtcToken(channelName, uid, Role.ROLE_PUBLISHER, expireSeconds);
     }
@@ -77,7 +327,332 @@ public class AgoraTokenService {
      * @return The generated token
      */
     public String generateMeetingTokenWithUserAccount(String channelName, String userAccount, int durationMinutes) {
+        String prefetched = getPrefetchedToken(channelName, userAccount, durationMinutes);
+        if (prefetched != null) {
+            publishIssued(TokenIssuedEvent.Kind.USER_ACCOUNT, channelName, userAccount, Role.ROLE_PUBLISHER, durationMinutes * 60, 1);
+            return prefetched;
+        }
         int expireSeconds = durationMinutes * 60;
         return generateRtcTokenWithUserAccount(channelName, userAccount, Role.ROLE_PUBLISHER, expireSeconds);
     }
+
+    /**
+     * Asynchronously generates an RTC token for joining a channel with a numeric UID.
+     * The token is built on the service executor, so the calling thread never blocks.
+     *
+     * @param channelName    The name of the channel to join
+     * @param uid           The user ID (use 0 for auto-assigned UID)
+     * @param role          The user role (ROLE_PUBLISHER or ROLE_SUBSCRIBER)
+     * @param expireSeconds Token expiration time in seconds (e.g., 3600 for 1 hour)
+     * @return A future of the generated token
+     */
+    public CompletableFuture<String> generateRtcTokenAsync(String channelName, int uid, Role role, int expireSeconds) {
+        return issueRtcTokenAsync(channelName, AccessToken2.getUidStr(uid), role, expireSeconds).thenApply(token -> {
+            publishIssued(TokenIssuedEvent.Kind.UID, channelName, String.valueOf(uid), role, expireSeconds, 1);
+            return token;
+        });
+    }
+
+    /**
+     * Asynchronously generates an RTC token for joining a channel with a user account.
+     * The token is built on the service executor, so the calling thread never blocks.
+     *
+     * @param channelName    The name of the channel to join
+     * @param userAccount    The user account (max 255 bytes)
+     * @param role          The user role (ROLE_PUBLISHER or ROLE_SUBSCRIBER)
+     * @param expireSeconds Token expiration time in seconds (e.g., 3600 for 1 hour)
+     * @return A future of the generated token
+     */
+    public CompletableFuture<String> generateRtcTokenWithUserAccountAsync(String channelName, String userAccount, Role role, int expireSeconds) {
+        return issueRtcTokenAsync(channelName, userAccount, role, expireSeconds).thenApply(token -> {
+            publishIssued(TokenIssuedEvent.Kind.USER_ACCOUNT, channelName, userAccount, role, expireSeconds, 1);
+            return token;
+        });
+    }
+
+    /**
+     * Asynchronously generates a meeting token with publisher role for a numeric UID.
+     *
+     * @param channelName     The name of the channel to join
+     * @param uid            The user ID
+     * @param durationMinutes Token duration in minutes
+     * @return A future of the generated token
+     */
+    public CompletableFuture<String> generateMeetingTokenAsync(String channelName, int uid, int durationMinutes) {
+        String prefetched = getPrefetchedToken(channelName, AccessToken2.getUidStr(uid), durationMinutes);
+        if (prefetched != null) {
+            publishIssued(TokenIssuedEvent.Kind.UID, channelName, String.valueOf(uid), Role.ROLE_PUBLISHER, durationMinutes * 60, 1);
+            return CompletableFuture.completedFuture(prefetched);
+        }
+        return generateRtcTokenAsync(channelName, uid, Role.ROLE_PUBLISHER, durationMinutes * 60);
+    }
+
+    /**
+     * Asynchronously generates a meeting token with publisher role for a user account.
+     *
+     * @param channelName     The name of the channel to join
+     * @param userAccount    The user account
+     * @param durationMinutes Token duration in minutes
+     * @return A future of the generated token
+     */
+    public CompletableFuture<String> generateMeetingTokenWithUserAccountAsync(String channelName, String userAccount, int durationMinutes) {
+        String prefetched = getPrefetchedToken(channelName, userAccount, durationMinutes);
+        if (prefetched != null) {
+            publishIssued(TokenIssuedEvent.Kind.USER_ACCOUNT, channelName, userAccount, Role.ROLE_PUBLISHER, durationMinutes * 60, 1);
+            return CompletableFuture.completedFuture(prefetched);
+        }
+        return generateRtcTokenWithUserAccountAsync(channelName, userAccount, Role.ROLE_PUBLISHER, durationMinutes * 60);
+    }
+
+    /**
+     * Generates RTC tokens for a whole channel roster with numeric UIDs.
+     * The tokens are built in parallel on all cores; the channel part of the token is packed once
+     * and shared, while each worker thread signs and compresses with its own resources. Bulk
+     * generation bypasses the token cache and request coalescing.
+     *
+     * @param channelName    The name of the channel to join
+     * @param uids           The user IDs
+     * @param role           The user role (ROLE_PUBLISHER or ROLE_SUBSCRIBER)
+     * @param expireSeconds  Token expiration time in seconds (e.g., 3600 for 1 hour)
+     * @return The generated tokens by UID, in roster order
+     */
+    public Map<Integer, String> generateRtcTokens(String channelName, Collection<Integer> uids, Role role, int expireSeconds) {
+        List<Integer> roster = new ArrayList<>(uids);
+        List<String> accounts = new ArrayList<>(roster.size());
+        for (int uid : roster) {
+            accounts.add(AccessToken2.getUidStr(uid));
+        }
+        String[] tokens = buildRosterTokens(channelName, accounts, role, expireSeconds);
+
+        Map<Integer, String> result = new LinkedHashMap<>();
+        for (int i = 0; i < tokens.length; i++) {
+            result.put(roster.get(i), tokens[i]);
+        }
+        publishIssued(TokenIssuedEvent.Kind.UID, channelName, null, role, expireSeconds, result.size());
+        return result;
+    }
+
+    /**
+     * Generates RTC tokens for a whole channel roster with user accounts.
+     * The tokens are built in parallel, as by {@link #generateRtcTokens(String, Collection, Role, int)}.
+     *
+     * @param channelName    The name of the channel to join
+     * @param userAccounts   The user accounts (max 255 bytes each)
+     * @param role           The user role (ROLE_PUBLISHER or ROLE_SUBSCRIBER)
+     * @param expireSeconds  Token expiration time in seconds (e.g., 3600 for 1 hour)
+     * @return The generated tokens by user account, in roster order
+     */
+    public Map<String, String> generateRtcTokensWithUserAccounts(String channelName, Collection<String> userAccounts, Role role, int expireSeconds) {
+        List<String> accounts = new ArrayList<>(userAccounts);
+        String[] tokens = buildRosterTokens(channelName, accounts, role, expireSeconds);
+
+        Map<String, String> result = new LinkedHashMap<>();
+        for (int i = 0; i < tokens.length; i++) {
+            result.put(accounts.get(i), tokens[i]);
+        }
+        publishIssued(TokenIssuedEvent.Kind.USER_ACCOUNT, channelName, null, role, expireSeconds, result.size());
+        return result;
+    }
+
+    private void publishIssued(TokenIssuedEvent.Kind kind, String channelName, String user, Role role, int expireSeconds, int count) {
+        issued.add(count);
+        UsageCounters usage = this.usageCounters;
+        if (usage != null && credentials != null) {
+            usage.record(credentials.getAppId(), channelName, AccessToken2.SERVICE_TYPE_RTC, count);
+        }
+        TokenEventSink sink = this.eventSink;
+        if (sink != TokenEventSink.NONE) {
+            sink.publish(new TokenIssuedEvent(kind, channelName, user, role, expireSeconds, count, System.currentTimeMillis()));
+        }
+    }
+
+    private String getPrefetchedToken(String channelName, String account, int durationMinutes) {
+        MeetingPrefetcher prefetcher = this.meetingPrefetcher;
+        if (prefetcher == null) {
+            return null;
+        }
+        String token = prefetcher.getToken(channelName, account, durationMinutes);
+        recordCacheAccess("prefetched", token != null);
+        return token;
+    }
+
+    private String issueRtcToken(String channelName, String account, Role role, int expireSeconds) {
+        String overQuota = checkQuota(channelName, account, role, expireSeconds);
+        if (overQuota != null) {
+            return overQuota;
+        }
+        return issueAdmittedRtcToken(channelName, account, role, expireSeconds);
+    }
+
+    private String issueAdmittedRtcToken(String channelName, String account, Role role, int expireSeconds) {
+        IssuedTokenCache cache = this.tokenCache;
+        boolean coalesce = this.coalescing;
+        if (cache == null && !coalesce) {
+            return admittedBuild(() -> buildRtcToken(channelName, account, role, expireSeconds));
+        }
+
+        TokenRequestKey key = new TokenRequestKey(channelName, account, role, expireSeconds);
+        String token = cache == null ? null : cachedToken(cache, key);
+        if (token == null) {
+            token = coalesce ? inFlight.execute(key, () -> buildAndCache(key, cache)) : buildAndCache(key, cache);
+        }
+        return token;
+    }
+
+    private CompletableFuture<String> issueRtcTokenAsync(String channelName, String account, Role role, int expireSeconds) {
+        try {
+            String overQuota = checkQuota(channelName, account, role, expireSeconds);
+            if (overQuota != null) {
+                return CompletableFuture.completedFuture(overQuota);
+            }
+        } catch (TokenRejectedException e) {
+            CompletableFuture<String> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+
+        IssuedTokenCache cache = this.tokenCache;
+        if (!coalescing) {
+            return supplyAsync(() -> issueAdmittedRtcToken(channelName, account, role, expireSeconds));
+        }
+
+        TokenRequestKey key = new TokenRequestKey(channelName, account, role, expireSeconds);
+        String token = cache == null ? null : cachedToken(cache, key);
+        if (token != null) {
+            return CompletableFuture.completedFuture(token);
+        }
+        return inFlight.executeAsync(key, () -> supplyAsync(() -> buildAndCache(key, cache)));
+    }
+
+    /**
+     * Takes a permit from the rate limiters.
+     *
+     * @return null if the request is within quota, or a cached token that has not expired if it is not
+     * @throws TokenRejectedException If the request is over quota and no such token is cached
+     */
+    private String checkQuota(String channelName, String account, Role role, int expireSeconds) {
+        RateLimiter users = this.userRateLimiter;
+        RateLimiter channels = this.channelRateLimiter;
+        boolean userChecked = users != null && !account.isEmpty();
+        boolean userLimited = userChecked && !users.tryAcquire(account);
+        boolean channelLimited = !userLimited && channels != null && !channels.tryAcquire(channelName);
+        if (!userLimited && !channelLimited) {
+            return null;
+        }
+        if (channelLimited && userChecked) {
+            // The request is refused, so the user should not be charged for it.
+            users.refund(account);
+        }
+
+        IssuedTokenCache cache = this.tokenCache;
+        if (cache != null) {
+            String token = cache.getUnexpired(new TokenRequestKey(channelName, account, role, expireSeconds), getCredentials());
+            if (token != null) {
+                return token;
+            }
+        }
+        recordRejection(TokenMetrics.FailureReason.RATE_LIMITED);
+        throw new TokenRejectedException(TokenRejectedException.Reason.RATE_LIMITED,
+                (userLimited ? "user " + account : "channel " + channelName) + " is over its token quota");
+    }
+
+    private String cachedToken(IssuedTokenCache cache, TokenRequestKey key) {
+        String token = cache.get(key, getCredentials());
+        recordCacheAccess("issued-tokens", token != null);
+        return token;
+    }
+
+    private static void recordCacheAccess(String cacheName, boolean hit) {
+        TokenMetrics metrics = TokenMetrics.installed();
+        if (metrics != null) {
+            metrics.cacheAccessed(cacheName, hit);
+        }
+    }
+
+    private static void recordRejection(TokenMetrics.FailureReason reason) {
+        TokenMetrics metrics = TokenMetrics.installed();
+        if (metrics != null) {
+            metrics.operationFailed(AccessToken2.getVersion(), TokenMetrics.Operation.BUILD, reason);
+        }
+    }
+
+    private CompletableFuture<String> supplyAsync(Supplier<String> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, getExecutor());
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<String> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private String buildAndCache(TokenRequestKey key, IssuedTokenCache cache) {
+        AppCredentials signing = getCredentials();
+        String token = admittedBuild(() -> buildRtcToken(signing, key.getChannelName(), key.getAccount(), key.getRole(), key.getExpireSeconds()));
+        if (cache != null && !token.isEmpty()) {
+            cache.put(key, token, signing);
+        }
+        return token;
+    }
+
+    private <T> T admittedBuild(Supplier<T> build) {
+        AdmissionController controller = this.admissionController;
+        long startedAt = System.nanoTime();
+        try {
+            T result = controller == null ? build.get() : controller.execute(build);
+            buildLatency.record(System.nanoTime() - startedAt);
+            return result;
+        } catch (TokenRejectedException e) {
+            recordRejection(TokenMetrics.FailureReason.OVERLOADED);
+            throw e;
+        }
+    }
+
+    private String[] buildRosterTokens(String channelName, List<String> accounts, Role role, int expireSeconds) {
+        String[] tokens = new String[accounts.size()];
+        AppCredentials credentials = getCredentials();
+        if (credentials == null) {
+            Arrays.fill(tokens, "");
+            return tokens;
+        }
+
+        // Everything but the user account and the salt is the same for the whole roster.
+        byte[] prefix = rtcPrefix(channelName, role, expireSeconds);
+        int issueTs = Utils.getTimestamp();
+
+        IntStream.range(0, tokens.length).parallel().forEach(i -> {
+            AccessToken2Codec codec = AccessToken2Codec.forCurrentThread();
+            tokens[i] = admittedBuild(() -> codec.encodeRtc(credentials, issueTs, expireSeconds, codec.nextSalt(), prefix, accounts.get(i)));
+        });
+        return tokens;
+    }
+
+    String buildRtcToken(String channelName, String account, Role role, int expireSeconds) {
+        return buildRtcToken(getCredentials(), channelName, account, role, expireSeconds);
+    }
+
+    String buildRtcToken(AppCredentials credentials, String channelName, String account, Role role, int expireSeconds) {
+        if (credentials == null) {
+            return "";
+        }
+        CodecPool pool = codecPool;
+        AccessToken2Codec codec = pool.acquire();
+        try {
+            return codec.encodeRtc(credentials, Utils.getTimestamp(), expireSeconds, codec.nextSalt(),
+                    rtcPrefix(channelName, role, expireSeconds), account);
+        } finally {
+            pool.release(codec);
+        }
+    }
+
+    private static byte[] rtcPrefix(String channelName, Role role, int expireSeconds) {
+        AccessToken2.ServiceRtc service = new AccessToken2.ServiceRtc(channelName, "");
+        service.addPrivilegeRtc(AccessToken2.PrivilegeRtc.PRIVILEGE_JOIN_CHANNEL, expireSeconds);
+        if (role == Role.ROLE_PUBLISHER) {
+            service.addPrivilegeRtc(AccessToken2.PrivilegeRtc.PRIVILEGE_PUBLISH_AUDIO_STREAM, expireSeconds);
+            service.addPrivilegeRtc(AccessToken2.PrivilegeRtc.PRIVILEGE_PUBLISH_VIDEO_STREAM, expireSeconds);
+            service.addPrivilegeRtc(AccessToken2.PrivilegeRtc.PRIVILEGE_PUBLISH_DATA_STREAM, expireSeconds);
+        }
+        return AccessToken2Codec.packRtcPrefix(channelName, service.getPrivileges());
+    }
 }
\ No newline at end of file
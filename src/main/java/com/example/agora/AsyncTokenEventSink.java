@@ -0,0 +1,208 @@
+package com.example.agora;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Event sink that hands events to subscribers on a background thread.
+ * Issuing threads only claim a slot in a bounded lock-free ring buffer and store the event; they
+ * never wait for a lock or for subscribers. When the buffer is full the event is dropped and
+ * counted. A single daemon thread drains the buffer and calls every subscriber in order.
+ */
+public class AsyncTokenEventSink implements TokenEventSink, AutoCloseable {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicReferenceArray<TokenIssuedEvent> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    private final CopyOnWriteArrayList<TokenEventListener> listeners = new CopyOnWriteArrayList<>();
+    private final Thread drainer;
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+    private final AtomicInteger publishing = new AtomicInteger();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder listenerFailures = new LongAdder();
+
+    /**
+     * Creates a sink and starts its delivery thread.
+     *
+     * @param capacity The number of events the buffer holds, rounded up to a power of two
+     */
+    public AsyncTokenEventSink(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+
+        drainer = new Thread(this::drain, "agora-token-events");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Adds a subscriber.
+     *
+     * @param listener The subscriber
+     */
+    public void subscribe(TokenEventListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a subscriber.
+     *
+     * @param listener The subscriber
+     */
+    public void unsubscribe(TokenEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void publish(TokenIssuedEvent event) {
+        // Counted before checking closed, so the drain on close waits for publishers already past the check.
+        publishing.incrementAndGet();
+        try {
+            enqueue(event);
+        } finally {
+            publishing.decrementAndGet();
+        }
+    }
+
+    private void enqueue(TokenIssuedEvent event) {
+        if (closed) {
+            dropped.increment();
+            return;
+        }
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, event);
+                    sequences.set(index, position + 1);
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                dropped.increment();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+        published.increment();
+        if (sleeping) {
+            LockSupport.unpark(drainer);
+        }
+    }
+
+    /**
+     * Stops the delivery thread after it has delivered the events already published, including
+     * those of publishers that were still storing an event when the sink was closed. Called from
+     * a subscriber, it returns right away and the delivery thread stops once that subscriber
+     * returns.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (Thread.currentThread() == drainer) {
+            return;
+        }
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    /**
+     * @return The number of events dropped because the buffer was full or the sink was closed
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return The number of times a subscriber threw an exception
+     */
+    public long getListenerFailureCount() {
+        return listenerFailures.sum();
+    }
+
+    private void drain() {
+        while (true) {
+            TokenIssuedEvent event = poll();
+            if (event != null) {
+                deliver(event);
+                continue;
+            }
+            if (closed) {
+                // Read the count first: a publisher stores its event before leaving publish().
+                if (publishing.get() == 0 && !peek()) {
+                    return;
+                }
+                Thread.yield();
+                continue;
+            }
+            sleeping = true;
+            if (peek()) {
+                sleeping = false;
+                continue;
+            }
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            sleeping = false;
+        }
+    }
+
+    private boolean peek() {
+        return sequences.get((int) head & mask) == head + 1;
+    }
+
+    private TokenIssuedEvent poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        TokenIssuedEvent event = slots.get(index);
+        slots.set(index, null);
+        sequences.set(index, head + mask + 1);
+        head++;
+        return event;
+    }
+
+    private void deliver(TokenIssuedEvent event) {
+        for (TokenEventListener listener : listeners) {
+            try {
+                listener.onTokenIssued(event);
+            } catch (RuntimeException e) {
+                listenerFailures.increment();
+            }
+        }
+    }
+}
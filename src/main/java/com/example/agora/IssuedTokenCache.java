@@ -0,0 +1,198 @@
+package com.example.agora;
+
+import io.agora.media.AppCredentials;
+import io.agora.media.Utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Opt-in cache of issued RTC tokens for {@link AgoraTokenService}.
+ * A cached token is returned for an identical request while at least a configurable fraction of
+ * its lifetime is left, so reconnecting users get a token that is still comfortably valid.
+ * When the cache is full, stale tokens are dropped first, then the ones closest to expiring.
+ * Each token is cached with the credentials it was signed with and is only served for those
+ * credentials, so a token signed just before a certificate rotation is never served after it.
+ */
+public class IssuedTokenCache {
+    private final ConcurrentHashMap<TokenRequestKey, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final int maximumSize;
+    private final double minRemainingFraction;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache that serves tokens while at least half of their lifetime is left.
+     *
+     * @param maximumSize The maximum number of cached tokens
+     */
+    public IssuedTokenCache(int maximumSize) {
+        this(maximumSize, 0.5);
+    }
+
+    /**
+     * Creates a cache of issued tokens.
+     *
+     * @param maximumSize          The maximum number of cached tokens
+     * @param minRemainingFraction The fraction of a token's lifetime (0 to 1) that must be left for it to be served
+     */
+    public IssuedTokenCache(int maximumSize, double minRemainingFraction) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        if (minRemainingFraction < 0 || minRemainingFraction > 1) {
+            throw new IllegalArgumentException("minRemainingFraction must be between 0 and 1");
+        }
+        this.maximumSize = maximumSize;
+        this.minRemainingFraction = minRemainingFraction;
+    }
+
+    /**
+     * Returns a cached token for the request if enough of its lifetime is left.
+     *
+     * @param key     The request
+     * @param signing The credentials tokens are signed with now
+     * @return The cached token, or null on a miss
+     */
+    public String get(TokenRequestKey key, AppCredentials signing) {
+        Entry entry = current(key, signing);
+        if (entry != null && entry.isFresh(Utils.getTimestamp())) {
+            hits.increment();
+            return entry.token;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Returns a cached token for the request as long as it has not expired, however little of
+     * its lifetime is left. Used to serve requests that cannot be given a new token; not counted
+     * as a hit or a miss.
+     *
+     * @param key     The request
+     * @param signing The credentials tokens are signed with now
+     * @return The cached token, or null if there is none or it has expired
+     */
+    public String getUnexpired(TokenRequestKey key, AppCredentials signing) {
+        Entry entry = current(key, signing);
+        return entry != null && Utils.getTimestamp() < entry.expireAt ? entry.token : null;
+    }
+
+    /**
+     * Caches a token issued now for the request.
+     *
+     * @param key        The request
+     * @param token      The issued token
+     * @param signedWith The credentials the token was signed with
+     */
+    public void put(TokenRequestKey key, String token, AppCredentials signedWith) {
+        int now = Utils.getTimestamp();
+        long lifetime = key.getExpireSeconds();
+        entries.put(key, new Entry(token, signedWith, now + lifetime, now + (long) Math.ceil(lifetime * (1 - minRemainingFraction))));
+        if (entries.size() > maximumSize) {
+            evict(now);
+        }
+    }
+
+    /**
+     * Removes all cached tokens.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return The number of cached tokens
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return The fraction of lookups served from the cache, or 0 if there were none
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    private Entry current(TokenRequestKey key, AppCredentials signing) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.signedWith != signing) {
+            // Signed before a rotation: it would stop verifying when the grace window ends.
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    private void evict(int now) {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if (!it.next().isFresh(now)) {
+                    it.remove();
+                    evictions.increment();
+                }
+            }
+            if (entries.size() <= maximumSize) {
+                return;
+            }
+
+            // Still full of fresh tokens: drop the ones with the least lifetime left, with some headroom.
+            List<Map.Entry<TokenRequestKey, Entry>> candidates = new ArrayList<>(entries.entrySet());
+            candidates.sort((a, b) -> Long.compare(a.getValue().expireAt, b.getValue().expireAt));
+            int target = maximumSize - maximumSize / 10;
+            for (int i = 0; i < candidates.size() && entries.size() > target; i++) {
+                Map.Entry<TokenRequestKey, Entry> candidate = candidates.get(i);
+                if (entries.remove(candidate.getKey(), candidate.getValue())) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static final class Entry {
+        final String token;
+        final AppCredentials signedWith;
+        final long expireAt;
+        final long staleAt;
+
+        Entry(String token, AppCredentials signedWith, long expireAt, long staleAt) {
+            this.token = token;
+            this.signedWith = signedWith;
+            this.expireAt = expireAt;
+            this.staleAt = staleAt;
+        }
+
+        boolean isFresh(long now) {
+            return now < staleAt && now < expireAt;
+        }
+    }
+}
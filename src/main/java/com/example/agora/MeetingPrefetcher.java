@@ -0,0 +1,292 @@
+package com.example.agora;
+
+import io.agora.media.AccessToken2;
+import io.agora.media.AppCredentials;
+import io.agora.media.RtcTokenBuilder2.Role;
+import io.agora.media.Utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pre-generates meeting tokens shortly before scheduled meetings start.
+ * Participants of a meeting tend to join within seconds of its start time. When a meeting is
+ * registered, its tokens are built on a background executor a configurable lead time before the
+ * start, kept in memory until the meeting ends, and served by
+ * {@link AgoraTokenService#generateMeetingToken} and
+ * {@link AgoraTokenService#generateMeetingTokenWithUserAccount} without building anything.
+ * <p>
+ * Prefetched tokens are valid from the moment they are built until the end of the meeting. As
+ * with {@link IssuedTokenCache}, a prefetched token is only served while a configurable fraction
+ * of the requested duration is left before it expires; later in the meeting, participants get a
+ * freshly built token valid for the full duration. Tokens signed with an App Certificate that has
+ * since been rotated out are dropped instead of served. Meetings are identified by channel and
+ * start time, so several occurrences of a meeting in the same channel can be registered at once;
+ * a meeting only ever drops the tokens it prefetched itself. Install the prefetcher with
+ * {@link AgoraTokenService#setMeetingPrefetcher(MeetingPrefetcher)}.
+ */
+public class MeetingPrefetcher {
+    private final AgoraTokenService tokenService;
+    private final ScheduledExecutorService executor;
+    private final int leadSeconds;
+    private final double minRemainingFraction;
+    private final ConcurrentHashMap<TokenRequestKey, Prefetched> tokens = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<MeetingKey, Meeting> meetings = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a prefetcher that serves tokens while at least half of the meeting duration is left
+     * before they expire.
+     *
+     * @param tokenService The service whose credentials sign the tokens
+     * @param executor     The executor that builds tokens and drops them after meetings end
+     * @param leadSeconds  How many seconds before a meeting starts its tokens are built
+     */
+    public MeetingPrefetcher(AgoraTokenService tokenService, ScheduledExecutorService executor, int leadSeconds) {
+        this(tokenService, executor, leadSeconds, 0.5);
+    }
+
+    /**
+     * Creates a prefetcher.
+     *
+     * @param tokenService         The service whose credentials sign the tokens
+     * @param executor             The executor that builds tokens and drops them after meetings end
+     * @param leadSeconds          How many seconds before a meeting starts its tokens are built
+     * @param minRemainingFraction The fraction of the meeting duration (0 to 1) a token must still be valid for to be served
+     */
+    public MeetingPrefetcher(AgoraTokenService tokenService, ScheduledExecutorService executor, int leadSeconds, double minRemainingFraction) {
+        if (leadSeconds < 0) {
+            throw new IllegalArgumentException("leadSeconds must not be negative");
+        }
+        if (minRemainingFraction < 0 || minRemainingFraction > 1) {
+            throw new IllegalArgumentException("minRemainingFraction must be between 0 and 1");
+        }
+        this.tokenService = tokenService;
+        this.executor = executor;
+        this.leadSeconds = leadSeconds;
+        this.minRemainingFraction = minRemainingFraction;
+    }
+
+    /**
+     * Registers an upcoming meeting for participants with numeric UIDs. A meeting registered
+     * earlier in the same channel with the same start time is replaced.
+     *
+     * @param channelName     The name of the meeting channel
+     * @param uids            The participant user IDs
+     * @param startTime       The meeting start time, in seconds since 1/1/1970
+     * @param durationMinutes The meeting duration in minutes, as later passed to generateMeetingToken
+     */
+    public void scheduleMeeting(String channelName, Collection<Integer> uids, int startTime, int durationMinutes) {
+        List<String> accounts = new ArrayList<>(uids.size());
+        for (int uid : uids) {
+            accounts.add(AccessToken2.getUidStr(uid));
+        }
+        schedule(channelName, accounts, startTime, durationMinutes);
+    }
+
+    /**
+     * Registers an upcoming meeting for participants with user accounts. A meeting registered
+     * earlier in the same channel with the same start time is replaced.
+     *
+     * @param channelName     The name of the meeting channel
+     * @param userAccounts    The participant user accounts
+     * @param startTime       The meeting start time, in seconds since 1/1/1970
+     * @param durationMinutes The meeting duration in minutes, as later passed to generateMeetingTokenWithUserAccount
+     */
+    public void scheduleMeetingWithUserAccounts(String channelName, Collection<String> userAccounts, int startTime, int durationMinutes) {
+        schedule(channelName, new ArrayList<>(userAccounts), startTime, durationMinutes);
+    }
+
+    /**
+     * Cancels a registered meeting and drops its prefetched tokens.
+     *
+     * @param channelName The name of the meeting channel
+     * @param startTime   The meeting start time, in seconds since 1/1/1970, as registered
+     */
+    public void cancelMeeting(String channelName, int startTime) {
+        Meeting meeting = meetings.remove(new MeetingKey(channelName, startTime));
+        if (meeting != null) {
+            meeting.cancel();
+        }
+    }
+
+    /**
+     * Cancels every registered meeting of a channel and drops their prefetched tokens.
+     *
+     * @param channelName The name of the meeting channel
+     */
+    public void cancelMeeting(String channelName) {
+        for (Meeting meeting : meetings.values()) {
+            if (meeting.key.channelName.equals(channelName) && meetings.remove(meeting.key, meeting)) {
+                meeting.cancel();
+            }
+        }
+    }
+
+    /**
+     * @return The number of tokens currently prefetched
+     */
+    public int getPrefetchedCount() {
+        return tokens.size();
+    }
+
+    /**
+     * @return The number of registered meetings that have not ended yet
+     */
+    public int getMeetingCount() {
+        return meetings.size();
+    }
+
+    /**
+     * Returns the prefetched meeting token of a participant if enough of its lifetime is left.
+     *
+     * @param channelName     The name of the meeting channel
+     * @param account         The user account, or the UID string ("" for UID 0)
+     * @param durationMinutes The meeting duration in minutes
+     * @return The token, or null if none was prefetched, it expires too soon or it is signed with a
+     * certificate that is no longer current
+     */
+    String getToken(String channelName, String account, int durationMinutes) {
+        if (tokens.isEmpty()) {
+            return null;
+        }
+        TokenRequestKey key = new TokenRequestKey(channelName, account, Role.ROLE_PUBLISHER, durationMinutes * 60);
+        Prefetched prefetched = tokens.get(key);
+        if (prefetched == null) {
+            return null;
+        }
+        // Tokens signed before a certificate rotation would stop verifying when its grace window ends.
+        if (prefetched.signedWith != tokenService.getCredentials()) {
+            tokens.remove(key, prefetched);
+            return null;
+        }
+        long minRemaining = (long) Math.ceil(durationMinutes * 60L * minRemainingFraction);
+        return prefetched.expireAt - Utils.getTimestamp() >= minRemaining ? prefetched.token : null;
+    }
+
+    private void schedule(String channelName, List<String> accounts, int startTime, int durationMinutes) {
+        int now = Utils.getTimestamp();
+        int endTime = startTime + durationMinutes * 60;
+        Meeting meeting = new Meeting(new MeetingKey(channelName, startTime), accounts, endTime, durationMinutes);
+        Meeting previous = meetings.put(meeting.key, meeting);
+        if (previous != null) {
+            previous.cancel();
+        }
+
+        long prefetchDelay = Math.max(0, startTime - leadSeconds - now);
+        long endDelay = Math.max(0, endTime - now);
+        meeting.prefetch = executor.schedule(meeting::prefetchTokens, prefetchDelay, TimeUnit.SECONDS);
+        meeting.expiry = executor.schedule(() -> {
+            if (meetings.remove(meeting.key, meeting)) {
+                meeting.cancel();
+            }
+        }, endDelay, TimeUnit.SECONDS);
+    }
+
+    private final class Meeting {
+        final MeetingKey key;
+        final List<String> accounts;
+        final int endTime;
+        final int durationMinutes;
+        volatile ScheduledFuture<?> prefetch;
+        volatile ScheduledFuture<?> expiry;
+        volatile boolean cancelled;
+
+        Meeting(MeetingKey key, List<String> accounts, int endTime, int durationMinutes) {
+            this.key = key;
+            this.accounts = accounts;
+            this.endTime = endTime;
+            this.durationMinutes = durationMinutes;
+        }
+
+        void prefetchTokens() {
+            for (String account : accounts) {
+                int now = Utils.getTimestamp();
+                int expireSeconds = endTime - now;
+                AppCredentials signing = tokenService.getCredentials();
+                if (cancelled || expireSeconds <= 0 || signing == null) {
+                    break;
+                }
+                String token;
+                try {
+                    token = tokenService.buildRtcToken(signing, key.channelName, account, Role.ROLE_PUBLISHER, expireSeconds);
+                } catch (RuntimeException e) {
+                    // Already reported to the token metrics; the user's token is built on demand instead.
+                    continue;
+                }
+                TokenRequestKey tokenKey = tokenKey(account);
+                Prefetched prefetched = new Prefetched(token, signing, (long) now + expireSeconds, this);
+                tokens.put(tokenKey, prefetched);
+                // cancel() may have dropped this meeting's tokens before the put landed.
+                if (cancelled) {
+                    tokens.remove(tokenKey, prefetched);
+                }
+            }
+        }
+
+        /**
+         * Stops prefetching and drops the tokens this meeting prefetched, leaving those of other
+         * meetings under the same keys in place.
+         */
+        void cancel() {
+            cancelled = true;
+            for (ScheduledFuture<?> future : new ScheduledFuture<?>[] { prefetch, expiry }) {
+                if (future != null) {
+                    future.cancel(false);
+                }
+            }
+            for (String account : accounts) {
+                tokens.computeIfPresent(tokenKey(account), (k, prefetched) -> prefetched.meeting == this ? null : prefetched);
+            }
+        }
+
+        private TokenRequestKey tokenKey(String account) {
+            return new TokenRequestKey(key.channelName, account, Role.ROLE_PUBLISHER, durationMinutes * 60);
+        }
+    }
+
+    private static final class MeetingKey {
+        final String channelName;
+        final int startTime;
+
+        MeetingKey(String channelName, int startTime) {
+            this.channelName = channelName;
+            this.startTime = startTime;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MeetingKey)) {
+                return false;
+            }
+            MeetingKey other = (MeetingKey) o;
+            return startTime == other.startTime && channelName.equals(other.channelName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * channelName.hashCode() + startTime;
+        }
+    }
+
+    private static final class Prefetched {
+        final String token;
+        final AppCredentials signedWith;
+        final long expireAt;
+        final Meeting meeting;
+
+        Prefetched(String token, AppCredentials signedWith, long expireAt, Meeting meeting) {
+            this.token = token;
+            this.signedWith = signedWith;
+            this.expireAt = expireAt;
+            this.meeting = meeting;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.agora;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token-bucket rate limiter keyed by strings, such as user accounts or channel names.
+ * <p>
+ * Each key's bucket is a single {@link AtomicLong} holding the time at which the bucket will be
+ * full again (the generic cell rate algorithm), so a check is one map lookup and one CAS. A bucket
+ * that has refilled completely carries no information and is dropped when the key table reaches
+ * its maximum size. If the table is still full after that, keys without a bucket share a single
+ * overflow bucket, which keeps memory bounded without letting new keys through unchecked.
+ */
+public class RateLimiter {
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflow = new AtomicLong(System.nanoTime());
+    private final ReentrantLock sweepLock = new ReentrantLock();
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maximumKeys;
+
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates a rate limiter.
+     *
+     * @param permitsPerSecond The sustained number of permits per key per second
+     * @param burst            The number of permits a key can take at once after being idle
+     * @param maximumKeys      The maximum number of keys tracked
+     */
+    public RateLimiter(double permitsPerSecond, int burst, int maximumKeys) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException("burst must be positive");
+        }
+        if (maximumKeys <= 0) {
+            throw new IllegalArgumentException("maximumKeys must be positive");
+        }
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+        this.burstNanos = intervalNanos * burst;
+        this.maximumKeys = maximumKeys;
+    }
+
+    /**
+     * Takes a permit for a key if its bucket has one.
+     *
+     * @param key The key
+     * @return Whether a permit was taken
+     */
+    public boolean tryAcquire(String key) {
+        long now = System.nanoTime();
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = newBucket(key, now);
+        }
+        while (true) {
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                rejected.increment();
+                return false;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a permit taken with {@link #tryAcquire(String)} for a request that was refused
+     * for another reason. A bucket is never refilled beyond full.
+     *
+     * @param key The key
+     */
+    public void refund(String key) {
+        long now = System.nanoTime();
+        AtomicLong bucket = buckets.getOrDefault(key, overflow);
+        while (true) {
+            long fullAt = bucket.get();
+            long refunded = Math.max(now, fullAt - intervalNanos);
+            if (refunded == fullAt || bucket.compareAndSet(fullAt, refunded)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The number of keys with a bucket
+     */
+    public int getKeyCount() {
+        return buckets.size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private AtomicLong newBucket(String key, long now) {
+        if (buckets.size() >= maximumKeys) {
+            sweep(now);
+            if (buckets.size() >= maximumKeys) {
+                return overflow;
+            }
+        }
+        AtomicLong bucket = new AtomicLong(now);
+        AtomicLong existing = buckets.putIfAbsent(key, bucket);
+        return existing == null ? bucket : existing;
+    }
+
+    private void sweep(long now) {
+        if (!sweepLock.tryLock()) {
+            return;
+        }
+        try {
+            Iterator<AtomicLong> it = buckets.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().get() - now <= 0) {
+                    it.remove();
+                }
+            }
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.agora;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical requests into a single execution.
+ * While a computation for a key is in flight, every other caller asking for the same key waits
+ * for it and receives its result (or its exception) instead of computing its own. Nothing is kept
+ * once the computation completes, so this bounds work during bursts without acting as a cache.
+ *
+ * @param <K> The request key type
+ * @param <V> The result type
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * Runs the computation for a key, or joins the one already in flight.
+     *
+     * @param key      The request key
+     * @param supplier The computation, run by the first caller only
+     * @return The result of the computation
+     */
+    public V execute(K key, Supplier<V> supplier) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            shared.increment();
+            return await(existing);
+        }
+
+        executions.increment();
+        try {
+            V value = supplier.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Starts the asynchronous computation for a key, or joins the one already in flight.
+     * Synchronous and asynchronous callers of the same key share one computation.
+     *
+     * @param key      The request key
+     * @param supplier Starts the computation, called by the first caller only
+     * @return A future of the result; completing or cancelling it does not affect other callers
+     */
+    public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> supplier) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            shared.increment();
+            return existing.thenApply(Function.identity());
+        }
+
+        executions.increment();
+        CompletableFuture<V> started;
+        try {
+            started = supplier.get();
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(e);
+            return mine.thenApply(Function.identity());
+        }
+        started.whenComplete((value, error) -> {
+            inFlight.remove(key, mine);
+            if (error != null) {
+                mine.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            } else {
+                mine.complete(value);
+            }
+        });
+        return mine.thenApply(Function.identity());
+    }
+
+    /**
+     * @return The number of computations currently in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return The number of computations that were run
+     */
+    public long getExecutionCount() {
+        return executions.sum();
+    }
+
+    /**
+     * @return The number of requests that joined a computation already in flight
+     */
+    public long getSharedCount() {
+        return shared.sum();
+    }
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.agora;
+
+import io.agora.media.AppCredentials;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token services for many Agora apps served from one process, routed by App ID.
+ * Each app's credentials are validated once, when the app is registered, and its service keeps
+ * the signing state derived from them. Lookups are lock-free map reads; only registration and
+ * removal synchronize. The number of apps is capped and each app's token cache, if any, is
+ * bounded, so memory per app stays bounded too. Registering new credentials for an app already
+ * registered rotates its App Certificate in place: the app keeps its service and configuration,
+ * and the old certificate is reported as accepted for a grace window.
+ */
+public class TenantRegistry {
+    private final ConcurrentHashMap<String, AgoraTokenService> tenants = new ConcurrentHashMap<>();
+    private final int maximumTenants;
+    private final int tokenCacheSize;
+    private volatile int rotationGraceSeconds = 3600;
+
+    /**
+     * Creates a registry whose services do not cache tokens.
+     *
+     * @param maximumTenants The maximum number of registered apps
+     */
+    public TenantRegistry(int maximumTenants) {
+        this(maximumTenants, 0);
+    }
+
+    /**
+     * Creates a registry.
+     *
+     * @param maximumTenants The maximum number of registered apps
+     * @param tokenCacheSize The size of each app's issued-token cache, or 0 for no cache
+     */
+    public TenantRegistry(int maximumTenants, int tokenCacheSize) {
+        if (maximumTenants <= 0) {
+            throw new IllegalArgumentException("maximumTenants must be positive");
+        }
+        if (tokenCacheSize < 0) {
+            throw new IllegalArgumentException("tokenCacheSize must not be negative");
+        }
+        this.maximumTenants = maximumTenants;
+        this.tokenCacheSize = tokenCacheSize;
+    }
+
+    /**
+     * Sets how long the previous App Certificate of an app stays accepted after
+     * {@link #register(AppCredentials)} replaced it.
+     *
+     * @param rotationGraceSeconds The grace window in seconds (default 3600)
+     */
+    public void setRotationGraceSeconds(int rotationGraceSeconds) {
+        if (rotationGraceSeconds < 0) {
+            throw new IllegalArgumentException("rotationGraceSeconds must not be negative");
+        }
+        this.rotationGraceSeconds = rotationGraceSeconds;
+    }
+
+    public int getRotationGraceSeconds() {
+        return rotationGraceSeconds;
+    }
+
+    /**
+     * Registers an app, or rotates the App Certificate of one already registered.
+     *
+     * @param appId          The App ID
+     * @param appCertificate The App Certificate
+     * @return The token service of the app
+     * @throws IllegalArgumentException If the credentials are invalid
+     * @throws IllegalStateException    If the registry is full
+     */
+    public AgoraTokenService register(String appId, String appCertificate) {
+        return register(new AppCredentials(appId, appCertificate));
+    }
+
+    /**
+     * Registers an app, or rotates the App Certificate of one already registered. A registered app
+     * keeps its service, so its configuration and the references callers hold stay valid; the
+     * new certificate signs tokens right away and the old one stays accepted for the
+     * {@link #setRotationGraceSeconds(int) grace window}.
+     *
+     * @param credentials The validated credentials
+     * @return The token service of the app
+     * @throws IllegalStateException If the registry is full
+     */
+    public synchronized AgoraTokenService register(AppCredentials credentials) {
+        AgoraTokenService existing = tenants.get(credentials.getAppId());
+        if (existing != null) {
+            if (!credentials.equals(existing.getCredentials())) {
+                existing.getRotation().rotate(credentials.getAppCertificate(), rotationGraceSeconds);
+            }
+            return existing;
+        }
+        if (tenants.size() >= maximumTenants) {
+            throw new IllegalStateException("tenant registry is full (" + maximumTenants + " apps)");
+        }
+
+        AgoraTokenService service = new AgoraTokenService(credentials);
+        if (tokenCacheSize > 0) {
+            service.setTokenCache(new IssuedTokenCache(tokenCacheSize));
+        }
+        tenants.put(credentials.getAppId(), service);
+        return service;
+    }
+
+    /**
+     * Schedules an App Certificate rotation for a registered app. Its service keeps issuing tokens
+     * throughout; see {@link io.agora.media.RotatingCredentials}.
+     *
+     * @param appId          The App ID
+     * @param appCertificate The new App Certificate
+     * @param activateAt     When to start signing with it, in seconds since 1/1/1970
+     * @param graceSeconds   How long the current certificate is still accepted after activation
+     * @throws IllegalArgumentException If the app is not registered or the certificate is invalid
+     */
+    public void scheduleRotation(String appId, String appCertificate, int activateAt, int graceSeconds) {
+        route(appId).getRotation().scheduleRotation(appCertificate, activateAt, graceSeconds);
+    }
+
+    /**
+     * Removes an app.
+     *
+     * @param appId The App ID
+     * @return Whether the app was registered
+     */
+    public synchronized boolean unregister(String appId) {
+        return tenants.remove(appId) != null;
+    }
+
+    /**
+     * Returns the token service of an app.
+     *
+     * @param appId The App ID
+     * @return The service, or null if the app is not registered
+     */
+    public AgoraTokenService get(String appId) {
+        return tenants.get(appId);
+    }
+
+    /**
+     * Returns the token service of an app that must be registered.
+     *
+     * @param appId The App ID
+     * @return The service
+     * @throws IllegalArgumentException If the app is not registered
+     */
+    public AgoraTokenService route(String appId) {
+        AgoraTokenService service = tenants.get(appId);
+        if (service == null) {
+            throw new IllegalArgumentException("unknown appId: " + appId);
+        }
+        return service;
+    }
+
+    /**
+     * @return The registered App IDs
+     */
+    public Set<String> getAppIds() {
+        return tenants.keySet();
+    }
+
+    /**
+     * @return The number of registered apps
+     */
+    public int size() {
+        return tenants.size();
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.agora;
+
+/**
+ * Subscriber of token issuance events, registered with {@link AsyncTokenEventSink#subscribe}.
+ */
+public interface TokenEventListener {
+    /**
+     * Called on the sink's delivery thread for every issuance event.
+     *
+     * @param event The event
+     */
+    void onTokenIssued(TokenIssuedEvent event);
+
+    /**
+     * @return A listener that prints every event to standard output
+     */
+    static TokenEventListener console() {
+        return event -> System.out.println(event);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.agora;
+
+/**
+ * Receives token issuance events from {@link AgoraTokenService}.
+ * Implementations are called on the issuing thread and must not block it.
+ */
+public interface TokenEventSink {
+    /**
+     * Sink that discards every event; the service does not create events while it is installed.
+     */
+    TokenEventSink NONE = event -> { };
+
+    /**
+     * Publishes an event.
+     *
+     * @param event The event
+     */
+    void publish(TokenIssuedEvent event);
+}
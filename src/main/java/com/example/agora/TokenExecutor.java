@@ -0,0 +1,189 @@
+package com.example.agora;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executor that runs asynchronous token work off the caller's thread and measures it.
+ * It wraps either a bounded pool of platform threads or, on Java 21 and later, a
+ * virtual-thread-per-task executor, and records queue depth, queue wait and run time of the tasks.
+ */
+public class TokenExecutor implements Executor {
+    private final ExecutorService delegate;
+    private final boolean virtualThreads;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+
+    private TokenExecutor(ExecutorService delegate, boolean virtualThreads) {
+        this.delegate = delegate;
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Creates an executor backed by a fixed pool of daemon platform threads and a bounded queue.
+     * Tasks submitted while the queue is full are rejected.
+     *
+     * @param threads       The number of threads
+     * @param queueCapacity The maximum number of waiting tasks
+     * @return The executor
+     */
+    public static TokenExecutor bounded(int threads, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, "agora-token-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), factory, new ThreadPoolExecutor.AbortPolicy());
+        return new TokenExecutor(pool, false);
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per task.
+     *
+     * @return The executor
+     * @throws UnsupportedOperationException If the runtime is older than Java 21
+     */
+    public static TokenExecutor virtualThreads() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new TokenExecutor(executor, true);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later", e);
+        }
+    }
+
+    /**
+     * Creates the default executor: virtual threads when the runtime supports them, otherwise a
+     * bounded pool with one thread per processor. {@link AgoraTokenService} encodes tokens with
+     * codecs from its {@link io.agora.media.CodecPool}, so virtual threads do not each create one.
+     *
+     * @return The executor
+     */
+    public static TokenExecutor createDefault() {
+        try {
+            return virtualThreads();
+        } catch (UnsupportedOperationException e) {
+            int processors = Runtime.getRuntime().availableProcessors();
+            return bounded(processors, processors * 256);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        final long enqueuedAt = System.nanoTime();
+        submitted.increment();
+        try {
+            delegate.execute(() -> {
+                long startedAt = System.nanoTime();
+                queueNanos.add(startedAt - enqueuedAt);
+                started.increment();
+                try {
+                    task.run();
+                } finally {
+                    runNanos.add(System.nanoTime() - startedAt);
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Changes the number of threads of a bounded pool. Extra threads stop once they are idle.
+     *
+     * @param threads The number of threads
+     * @throws UnsupportedOperationException If tasks run on virtual threads
+     */
+    public void setThreads(int threads) {
+        if (virtualThreads) {
+            throw new UnsupportedOperationException("A virtual-thread executor has no pool to resize");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) delegate;
+        if (threads > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(threads);
+            pool.setCorePoolSize(threads);
+        } else {
+            pool.setCorePoolSize(threads);
+            pool.setMaximumPoolSize(threads);
+        }
+    }
+
+    /**
+     * @return The number of threads of a bounded pool, or 0 if tasks run on virtual threads
+     */
+    public int getThreads() {
+        return virtualThreads ? 0 : ((ThreadPoolExecutor) delegate).getMaximumPoolSize();
+    }
+
+    /**
+     * Stops accepting tasks; queued tasks still run.
+     */
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    /**
+     * @return Whether tasks run on virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return The number of tasks waiting to start
+     */
+    public long getQueueDepth() {
+        return submitted.sum() - rejected.sum() - started.sum();
+    }
+
+    /**
+     * @return The number of tasks running
+     */
+    public long getActiveCount() {
+        return started.sum() - completed.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return The average time tasks waited before starting, in microseconds
+     */
+    public double getAverageQueueMicros() {
+        long count = started.sum();
+        return count == 0 ? 0.0 : queueNanos.sum() / 1000.0 / count;
+    }
+
+    /**
+     * @return The average time tasks ran, in microseconds
+     */
+    public double getAverageRunMicros() {
+        long count = completed.sum();
+        return count == 0 ? 0.0 : runNanos.sum() / 1000.0 / count;
+    }
+}
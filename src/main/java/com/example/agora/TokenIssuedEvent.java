@@ -0,0 +1,83 @@
+package com.example.agora;
+
+import io.agora.media.RtcTokenBuilder2.Role;
+
+/**
+ * Describes tokens issued by {@link AgoraTokenService}, for logging and metrics subscribers.
+ * One event is published per single token and per roster.
+ */
+public final class TokenIssuedEvent {
+    /**
+     * How the users of the issued tokens are identified.
+     */
+    public enum Kind {
+        UID, USER_ACCOUNT
+    }
+
+    private final Kind kind;
+    private final String channelName;
+    private final String user;
+    private final Role role;
+    private final int expireSeconds;
+    private final int count;
+    private final long issuedAtMillis;
+
+    /**
+     * Creates an event.
+     *
+     * @param kind           How users are identified
+     * @param channelName    The channel name
+     * @param user           The UID or user account, or null for a roster
+     * @param role           The user role
+     * @param expireSeconds  The token lifetime in seconds
+     * @param count          The number of tokens issued
+     * @param issuedAtMillis The issue time, in milliseconds since 1/1/1970
+     */
+    public TokenIssuedEvent(Kind kind, String channelName, String user, Role role, int expireSeconds, int count, long issuedAtMillis) {
+        this.kind = kind;
+        this.channelName = channelName;
+        this.user = user;
+        this.role = role;
+        this.expireSeconds = expireSeconds;
+        this.count = count;
+        this.issuedAtMillis = issuedAtMillis;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getChannelName() {
+        return channelName;
+    }
+
+    /**
+     * @return The UID or user account, or null if the event covers a roster
+     */
+    public String getUser() {
+        return user;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public int getExpireSeconds() {
+        return expireSeconds;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getIssuedAtMillis() {
+        return issuedAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        String prefix = kind == Kind.UID ? "UID-based" : "UserAccount-based";
+        String who = user != null ? (kind == Kind.UID ? "UID=" : "User=") + user : "Count=" + count;
+        return prefix + (user != null ? " token: " : " tokens: ") + who + ", Channel=" + channelName + ", Expires=" + expireSeconds + "s";
+    }
+}
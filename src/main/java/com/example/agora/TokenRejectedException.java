@@ -0,0 +1,28 @@
+package com.example.agora;
+
+/**
+ * Thrown by {@link AgoraTokenService} when it refuses to issue a token. Callers can tell a refusal
+ * from a failure by its reason and retry later or elsewhere.
+ */
+public class TokenRejectedException extends RuntimeException {
+    /**
+     * Why a token was refused.
+     */
+    public enum Reason {
+        /** The user or the channel exceeded its issuance quota. */
+        RATE_LIMITED,
+        /** Issuance is at its concurrency limit; retry later or on another instance. */
+        OVERLOADED
+    }
+
+    private final Reason reason;
+
+    public TokenRejectedException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
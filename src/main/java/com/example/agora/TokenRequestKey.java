@@ -0,0 +1,76 @@
+package com.example.agora;
+
+import io.agora.media.RtcTokenBuilder2.Role;
+
+/**
+ * Identifies an RTC token request: two requests with equal keys can be served the same token.
+ * A numeric UID and the user account with the same digits produce identical tokens and therefore
+ * share a key.
+ */
+public final class TokenRequestKey {
+    private final String channelName;
+    private final String account;
+    private final Role role;
+    private final int expireSeconds;
+    private final int hash;
+
+    /**
+     * @param channelName   The name of the channel
+     * @param account       The user account, or the UID string ("" for UID 0)
+     * @param role          The user role
+     * @param expireSeconds The requested token lifetime in seconds
+     */
+    public TokenRequestKey(String channelName, String account, Role role, int expireSeconds) {
+        this.channelName = channelName;
+        this.account = account;
+        this.role = role;
+        this.expireSeconds = expireSeconds;
+        int h = channelName.hashCode();
+        h = 31 * h + account.hashCode();
+        h = 31 * h + role.hashCode();
+        h = 31 * h + expireSeconds;
+        this.hash = h;
+    }
+
+    public String getChannelName() {
+        return channelName;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public int getExpireSeconds() {
+        return expireSeconds;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TokenRequestKey)) {
+            return false;
+        }
+        TokenRequestKey other = (TokenRequestKey) o;
+        return hash == other.hash
+                && expireSeconds == other.expireSeconds
+                && role == other.role
+                && channelName.equals(other.channelName)
+                && account.equals(other.account);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenRequestKey{channel=" + channelName + ", account=" + account + ", role=" + role + ", expire=" + expireSeconds + "s}";
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.agora;
+
+/**
+ * Management interface of a token service, registered with JMX by {@link TokenServiceManagement}.
+ * Latencies are in microseconds. Attributes of a component that is not configured read as 0.
+ */
+public interface TokenServiceMXBean {
+    /**
+     * @return The number of tokens issued
+     */
+    long getIssuedCount();
+
+    /**
+     * @return Tokens issued per second, averaged over the last second or more
+     */
+    double getThroughput();
+
+    double getBuildLatencyMeanMicros();
+
+    long getBuildLatencyP50Micros();
+
+    long getBuildLatencyP99Micros();
+
+    long getBuildLatencyP999Micros();
+
+    int getTokenCacheSize();
+
+    double getTokenCacheHitRate();
+
+    int getCodecPoolIdle();
+
+    long getCodecPoolInUse();
+
+    long getCodecPoolCreated();
+
+    int getCodecPoolMaximumIdle();
+
+    int getExecutorThreads();
+
+    long getExecutorQueueDepth();
+
+    long getExecutorActiveCount();
+
+    long getUserRateLimiterRejections();
+
+    long getChannelRateLimiterRejections();
+
+    int getAdmissionLimit();
+
+    int getAdmissionInFlight();
+
+    long getAdmissionRejections();
+
+    boolean isOverloaded();
+
+    boolean isProfilingEnabled();
+
+    /**
+     * @return One build or parse in this many is profiled, or 0 if profiling is disabled
+     */
+    int getProfilingSampleEvery();
+
+    /**
+     * Empties the issued token cache.
+     */
+    void flushCaches();
+
+    /**
+     * @param maximumIdle The maximum number of idle codecs the service's codec pool keeps
+     */
+    void resizeCodecPool(int maximumIdle);
+
+    /**
+     * @param threads The number of threads of the service executor
+     */
+    void resizeExecutor(int threads);
+
+    /**
+     * @param sampleEvery Profile the stages of one build or parse in this many
+     */
+    void enableProfiling(int sampleEvery);
+
+    void disableProfiling();
+}
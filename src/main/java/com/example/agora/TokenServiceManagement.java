@@ -0,0 +1,235 @@
+package com.example.agora;
+
+import io.agora.media.CodecPool;
+import io.agora.media.Histogram;
+import io.agora.media.StageProfiler;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMX view of an {@link AgoraTokenService}.
+ * <p>
+ * Operators can watch throughput, build latency, the token cache, the codec pool, the executor,
+ * rate limiting and admission control, and flush the cache, resize the codec pool and the executor,
+ * and switch the {@link StageProfiler} on and off without a redeploy. Components are read on every
+ * access, so components installed on the service later show up too. Reading the attributes never
+ * creates a component: the executor attributes are 0 until the service has an executor.
+ */
+public class TokenServiceManagement implements TokenServiceMXBean {
+    private final AgoraTokenService service;
+    private ObjectName objectName;
+
+    private long sampledAt = System.nanoTime();
+    private long sampledCount;
+    private double throughput;
+
+    /**
+     * @param service The token service
+     */
+    public TokenServiceManagement(AgoraTokenService service) {
+        this.service = service;
+        this.sampledCount = service.getIssuedCount();
+    }
+
+    /**
+     * Registers this MBean with the platform MBean server as
+     * {@code com.example.agora:type=AgoraTokenService,name=<name>}.
+     *
+     * @param name The name distinguishing this service from others in the process
+     * @return The object name
+     * @throws JMException If the name is invalid or already registered
+     */
+    public synchronized ObjectName register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName registered = new ObjectName("com.example.agora:type=AgoraTokenService,name=" + ObjectName.quote(name));
+        server.registerMBean(this, registered);
+        objectName = registered;
+        return registered;
+    }
+
+    /**
+     * Removes this MBean from the platform MBean server, if it is registered.
+     *
+     * @throws JMException If it cannot be unregistered
+     */
+    public synchronized void unregister() throws JMException {
+        if (objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        }
+    }
+
+    @Override
+    public long getIssuedCount() {
+        return service.getIssuedCount();
+    }
+
+    @Override
+    public synchronized double getThroughput() {
+        long now = System.nanoTime();
+        long elapsed = now - sampledAt;
+        if (elapsed >= TimeUnit.SECONDS.toNanos(1)) {
+            long count = service.getIssuedCount();
+            throughput = (count - sampledCount) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            sampledCount = count;
+            sampledAt = now;
+        }
+        return throughput;
+    }
+
+    @Override
+    public double getBuildLatencyMeanMicros() {
+        return service.getBuildLatency().getMean() / 1000.0;
+    }
+
+    @Override
+    public long getBuildLatencyP50Micros() {
+        return percentileMicros(service.getBuildLatency(), 50);
+    }
+
+    @Override
+    public long getBuildLatencyP99Micros() {
+        return percentileMicros(service.getBuildLatency(), 99);
+    }
+
+    @Override
+    public long getBuildLatencyP999Micros() {
+        return percentileMicros(service.getBuildLatency(), 99.9);
+    }
+
+    @Override
+    public int getTokenCacheSize() {
+        IssuedTokenCache cache = service.getTokenCache();
+        return cache == null ? 0 : cache.size();
+    }
+
+    @Override
+    public double getTokenCacheHitRate() {
+        IssuedTokenCache cache = service.getTokenCache();
+        return cache == null ? 0.0 : cache.getHitRate();
+    }
+
+    @Override
+    public int getCodecPoolIdle() {
+        return service.getCodecPool().getIdleCount();
+    }
+
+    @Override
+    public long getCodecPoolInUse() {
+        return service.getCodecPool().getInUseCount();
+    }
+
+    @Override
+    public long getCodecPoolCreated() {
+        return service.getCodecPool().getCreatedCount();
+    }
+
+    @Override
+    public int getCodecPoolMaximumIdle() {
+        return service.getCodecPool().getMaximumIdle();
+    }
+
+    @Override
+    public int getExecutorThreads() {
+        TokenExecutor executor = service.currentExecutor();
+        return executor == null ? 0 : executor.getThreads();
+    }
+
+    @Override
+    public long getExecutorQueueDepth() {
+        TokenExecutor executor = service.currentExecutor();
+        return executor == null ? 0 : executor.getQueueDepth();
+    }
+
+    @Override
+    public long getExecutorActiveCount() {
+        TokenExecutor executor = service.currentExecutor();
+        return executor == null ? 0 : executor.getActiveCount();
+    }
+
+    @Override
+    public long getUserRateLimiterRejections() {
+        RateLimiter limiter = service.getUserRateLimiter();
+        return limiter == null ? 0 : limiter.getRejectedCount();
+    }
+
+    @Override
+    public long getChannelRateLimiterRejections() {
+        RateLimiter limiter = service.getChannelRateLimiter();
+        return limiter == null ? 0 : limiter.getRejectedCount();
+    }
+
+    @Override
+    public int getAdmissionLimit() {
+        AdmissionController controller = service.getAdmissionController();
+        return controller == null ? 0 : controller.getLimit();
+    }
+
+    @Override
+    public int getAdmissionInFlight() {
+        AdmissionController controller = service.getAdmissionController();
+        return controller == null ? 0 : controller.getInFlight();
+    }
+
+    @Override
+    public long getAdmissionRejections() {
+        AdmissionController controller = service.getAdmissionController();
+        return controller == null ? 0 : controller.getRejectedCount();
+    }
+
+    @Override
+    public boolean isOverloaded() {
+        AdmissionController controller = service.getAdmissionController();
+        return controller != null && controller.isOverloaded();
+    }
+
+    @Override
+    public boolean isProfilingEnabled() {
+        return StageProfiler.isEnabled();
+    }
+
+    @Override
+    public int getProfilingSampleEvery() {
+        return StageProfiler.getSampleEvery();
+    }
+
+    @Override
+    public void flushCaches() {
+        IssuedTokenCache cache = service.getTokenCache();
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    @Override
+    public void resizeCodecPool(int maximumIdle) {
+        service.getCodecPool().setMaximumIdle(maximumIdle);
+    }
+
+    @Override
+    public void resizeExecutor(int threads) {
+        TokenExecutor executor = service.currentExecutor();
+        if (executor == null) {
+            throw new IllegalStateException("the service has no executor yet");
+        }
+        executor.setThreads(threads);
+    }
+
+    @Override
+    public void enableProfiling(int sampleEvery) {
+        StageProfiler.enable(sampleEvery);
+    }
+
+    @Override
+    public void disableProfiling() {
+        StageProfiler.disable();
+    }
+
+    private static long percentileMicros(Histogram histogram, double percentile) {
+        return TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(percentile));
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.agora;
+
+import io.agora.media.UsageCounters;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically takes a {@link UsageCounters#snapshotAndReset() snapshot} of usage counters and
+ * writes it to a CSV file in a local directory, one file per period named
+ * {@code usage-<period end in milliseconds>.csv}. Each file has the columns
+ * {@code period_start,period_end,app_id,channel,service_type,count}, with times in milliseconds
+ * since 1/1/1970. Files are written under a temporary name and then renamed, so a reader never sees
+ * a partial file.
+ */
+public class UsageExporter implements AutoCloseable {
+    private static final String HEADER = "period_start,period_end,app_id,channel,service_type,count";
+
+    private final UsageCounters counters;
+    private final Path directory;
+    private final ScheduledFuture<?> task;
+
+    /**
+     * Creates an exporter and schedules its first export one period from now.
+     *
+     * @param counters      The counters to export
+     * @param directory     The directory the files are written to; it is created if missing
+     * @param executor      The executor that runs the exports
+     * @param periodSeconds The length of a period in seconds
+     * @throws IOException If the directory cannot be created
+     */
+    public UsageExporter(UsageCounters counters, Path directory, ScheduledExecutorService executor, long periodSeconds) throws IOException {
+        if (periodSeconds <= 0) {
+            throw new IllegalArgumentException("periodSeconds must be positive");
+        }
+        this.counters = counters;
+        this.directory = Files.createDirectories(directory);
+        this.task = executor.scheduleAtFixedRate(() -> {
+            try {
+                export();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Ends the current period now and writes its file.
+     *
+     * @return The file written
+     * @throws IOException If the file cannot be written
+     */
+    public synchronized Path export() throws IOException {
+        UsageCounters.Snapshot snapshot = counters.snapshotAndReset();
+        Path file = directory.resolve("usage-" + snapshot.getEndMillis() + ".csv");
+        Path partial = directory.resolve(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(partial, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.write('\n');
+            for (UsageCounters.Usage usage : snapshot.getUsage()) {
+                out.write(Long.toString(snapshot.getStartMillis()));
+                out.write(',');
+                out.write(Long.toString(snapshot.getEndMillis()));
+                out.write(',');
+                out.write(csvField(usage.getAppId()));
+                out.write(',');
+                out.write(csvField(usage.getChannelName()));
+                out.write(',');
+                out.write(Short.toString(usage.getServiceType()));
+                out.write(',');
+                out.write(Long.toString(usage.getCount()));
+                out.write('\n');
+            }
+        }
+        return Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Stops the periodic exports and writes the usage of the last, partial period.
+     *
+     * @throws IOException If the last file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        task.cancel(false);
+        export();
+    }
+
+    private static String csvField(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+}
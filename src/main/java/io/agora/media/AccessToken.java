@@ -47,23 +47,51 @@ public class AccessToken {
     }
 
     public String build() throws Exception {
-        if (! Utils.isUUID(appId)) {
+        TokenMetrics metrics = TokenMetrics.installed();
+        long startedAt = metrics == null ? 0 : System.nanoTime();
+        Object event = TokenEvents.beginBuild();
+        if (!Utils.isUUID(appId) || !Utils.isUUID(appCertificate)) {
+            if (metrics != null) {
+                metrics.operationFailed(VER, TokenMetrics.Operation.BUILD, TokenMetrics.FailureReason.INVALID_CREDENTIALS);
+            }
+            TokenEvents.failed(event, VER, TokenMetrics.FailureReason.INVALID_CREDENTIALS);
             return "";
         }
 
-        if (!Utils.isUUID(appCertificate)) {
-            return "";
+        String token;
+        byte[] content;
+        try {
+            messageRawContent = Utils.pack(message);
+            signature = generateSignature(appCertificate,
+                    appId, channelName, uid, messageRawContent);
+            crcChannelName = crc32(channelName);
+            crcUid = crc32(uid);
+
+            PackContent packContent = new PackContent(signature, crcChannelName, crcUid, messageRawContent);
+            content = Utils.pack(packContent);
+            token = getVersion() + this.appId + Utils.base64Encode(content);
+        } catch (Exception e) {
+            if (metrics != null) {
+                metrics.operationFailed(VER, TokenMetrics.Operation.BUILD, TokenMetrics.FailureReason.ERROR);
+            }
+            TokenEvents.failed(event, VER, TokenMetrics.FailureReason.ERROR);
+            throw e;
         }
 
-        messageRawContent = Utils.pack(message);
-        signature = generateSignature(appCertificate, 
-        		appId, channelName, uid, messageRawContent);
-        crcChannelName = crc32(channelName);
-        crcUid = crc32(uid);
+        if (metrics != null) {
+            metrics.tokenBuilt(VER, serviceType(), System.nanoTime() - startedAt, content.length, content.length, token.length());
+        }
+        if (event != null) {
+            TokenEvents.built(event, VER, Short.toString(serviceType()), content.length, token);
+        }
+        return token;
+    }
 
-        PackContent packContent = new PackContent(signature, crcChannelName, crcUid, messageRawContent);
-        byte[] content = Utils.pack(packContent);
-        return getVersion() + this.appId + Utils.base64Encode(content);
+    /**
+     * @return The version 007 service type matching the privileges: RTM for an RTM login, otherwise RTC.
+     */
+    private short serviceType() {
+        return message.messages.containsKey(Privileges.kRtmLogin.intValue) ? AccessToken2.SERVICE_TYPE_RTM : AccessToken2.SERVICE_TYPE_RTC;
     }
 
     public void addPrivilege(Privileges privilege, int expireTimestamp) {
@@ -90,7 +118,14 @@ public class AccessToken {
     }
 
     public boolean fromString(String token) {
+        TokenMetrics metrics = TokenMetrics.installed();
+        long startedAt = metrics == null ? 0 : System.nanoTime();
+        Object event = TokenEvents.beginParse();
         if (!getVersion().equals(token.substring(0, Utils.VERSION_LENGTH))) {
+            if (metrics != null) {
+                metrics.operationFailed(VER, TokenMetrics.Operation.PARSE, TokenMetrics.FailureReason.VERSION_MISMATCH);
+            }
+            TokenEvents.failed(event, VER, TokenMetrics.FailureReason.VERSION_MISMATCH);
             return false;
         }
         
@@ -105,9 +140,19 @@ public class AccessToken {
             Utils.unpack(messageRawContent, message);
         } catch (Exception e) {
             e.printStackTrace();
+            if (metrics != null) {
+                metrics.operationFailed(VER, TokenMetrics.Operation.PARSE, TokenMetrics.FailureReason.MALFORMED);
+            }
+            TokenEvents.failed(event, VER, TokenMetrics.FailureReason.MALFORMED);
             return false;
         }
-        
+
+        if (metrics != null) {
+            metrics.tokenParsed(VER, System.nanoTime() - startedAt);
+        }
+        if (event != null) {
+            TokenEvents.parsed(event, VER, Short.toString(serviceType()), token);
+        }
         return true;
     }
 
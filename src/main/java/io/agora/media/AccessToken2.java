@@ -85,26 +85,7 @@ public class AccessToken2 {
     }
 
     public String build() throws Exception {
-        if (!Utils.isUUID(this.appId) || !Utils.isUUID(this.appCert)) {
-            return "";
-        }
-
-        ByteBuf buf = new ByteBuf().put(this.appId).put(this.issueTs).put(this.expire).put(this.salt).put((short) this.services.size());
-        byte[] signing = getSign();
-
-        this.services.forEach((k, v) -> {
-            v.pack(buf);
-        });
-
-        Mac mac = Mac.getInstance("HmacSHA256");
-        mac.init(new SecretKeySpec(signing, "HmacSHA256"));
-        byte[] signature = mac.doFinal(buf.asBytes());
-
-        ByteBuf bufferContent = new ByteBuf();
-        bufferContent.put(signature);
-        bufferContent.buffer.put(buf.asBytes());
-
-        return getVersion() + Utils.base64Encode(Utils.compress(bufferContent.asBytes()));
+        return AccessToken2Codec.forCurrentThread().encode(this);
     }
 
     public Service getService(short serviceType) {
@@ -146,12 +127,28 @@ public class AccessToken2 {
     }
 
     public boolean parse(String token) {
+        TokenMetrics metrics = TokenMetrics.installed();
+        long startedAt = metrics == null ? 0 : System.nanoTime();
+        Object event = TokenEvents.beginParse();
         if (!getVersion().equals(token.substring(0, Utils.VERSION_LENGTH))) {
+            if (metrics != null) {
+                metrics.operationFailed(getVersion(), TokenMetrics.Operation.PARSE, TokenMetrics.FailureReason.VERSION_MISMATCH);
+            }
+            TokenEvents.failed(event, getVersion(), TokenMetrics.FailureReason.VERSION_MISMATCH);
             return false;
         }
 
         try {
-            byte[] data = Utils.decompress(Utils.base64Decode(token.substring(Utils.VERSION_LENGTH)));
+            boolean profiling = StageProfiler.sample();
+            long mark = profiling ? System.nanoTime() : 0;
+            byte[] compressed = Utils.base64Decode(token.substring(Utils.VERSION_LENGTH));
+            if (profiling) {
+                mark = StageProfiler.lap(StageProfiler.Stage.BASE64_DECODE, mark);
+            }
+            byte[] data = Utils.decompress(compressed);
+            if (profiling) {
+                mark = StageProfiler.lap(StageProfiler.Stage.DECOMPRESS, mark);
+            }
             ByteBuf buff = new ByteBuf(data);
             String signature = buff.readString();
             this.appId = buff.readString();
@@ -166,11 +163,26 @@ public class AccessToken2 {
                 service.unpack(buff);
                 this.services.put(serviceType, service);
             }
+            if (profiling) {
+                StageProfiler.lap(StageProfiler.Stage.UNPACK, mark);
+            }
         } catch (Exception e) {
             e.printStackTrace();
+            TokenMetrics.FailureReason reason = e instanceof IllegalArgumentException
+                    ? TokenMetrics.FailureReason.UNKNOWN_SERVICE : TokenMetrics.FailureReason.MALFORMED;
+            if (metrics != null) {
+                metrics.operationFailed(getVersion(), TokenMetrics.Operation.PARSE, reason);
+            }
+            TokenEvents.failed(event, getVersion(), reason);
             return false;
         }
 
+        if (metrics != null) {
+            metrics.tokenParsed(getVersion(), System.nanoTime() - startedAt);
+        }
+        if (event != null) {
+            TokenEvents.parsed(event, getVersion(), TokenEvents.serviceTypes(services.keySet()), token);
+        }
         return true;
     }
 
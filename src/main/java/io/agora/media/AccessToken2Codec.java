@@ -0,0 +1,366 @@
+package io.agora.media;
+
+import java.security.SecureRandom;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Reusable crypto and compression resources for encoding and decoding version 007 tokens.
+ * <p>
+ * Creating a {@link Mac}, a {@link Deflater} or an {@link Inflater} costs more than using one, so a
+ * codec keeps them together with its packing and output buffers and is reused for many tokens.
+ * Encoding produces exactly the bytes of the original {@link AccessToken2#build()} algorithm.
+ * A codec is not thread-safe; use {@link #forCurrentThread()} or give each worker its own instance.
+ */
+public final class AccessToken2Codec {
+    private static final ThreadLocal<AccessToken2Codec> LOCAL = ThreadLocal.withInitial(AccessToken2Codec::new);
+
+    private static final Base64 BASE64 = new Base64();
+    private static final Collection<Short> RTC_ONLY = Collections.singleton(AccessToken2.SERVICE_TYPE_RTC);
+
+    private final Mac mac;
+    private final ByteBuf content = new ByteBuf();
+    private Inflater inflater;
+    private Deflater deflater;
+    private SecureRandom random;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private Mac certificateMac;
+    private AppCredentials certificateMacOwner;
+    private byte[] output = new byte[1024];
+    private byte[] packed = new byte[1024];
+    private TokenMetrics metrics;
+    private long startedAt;
+    private Object event;
+    private boolean profiling;
+    private long profileMark;
+
+    public AccessToken2Codec() {
+        try {
+            mac = Mac.getInstance("HmacSHA256");
+        } catch (Exception e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    /**
+     * @return The codec owned by the calling thread.
+     */
+    public static AccessToken2Codec forCurrentThread() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Builds a token, as {@link AccessToken2#build()} does.
+     *
+     * @param token The token to encode.
+     * @return The token string, or an empty string if the App ID or App Certificate is invalid.
+     */
+    public String encode(AccessToken2 token) {
+        startBuild();
+        if (!Utils.isUUID(token.appId) || !Utils.isUUID(token.appCert)) {
+            buildFailed(TokenMetrics.FailureReason.INVALID_CREDENTIALS);
+            return "";
+        }
+
+        try {
+            ByteBuf buf = content.reset().put(token.appId).put(token.issueTs).put(token.expire).put(token.salt)
+                    .put((short) token.services.size());
+            for (AccessToken2.Service service : token.services.values()) {
+                service.pack(buf);
+            }
+            lap(StageProfiler.Stage.PACK);
+            byte[] signingKey = signingKey(token.appCert.getBytes(), token.issueTs, token.salt);
+            lap(StageProfiler.Stage.SIGNING_KEY);
+            return finish(signingKey, token.services.keySet());
+        } catch (RuntimeException e) {
+            buildFailed(TokenMetrics.FailureReason.ERROR);
+            throw e;
+        }
+    }
+
+    /**
+     * Builds a token with credentials validated in advance. The App ID and App Certificate fields
+     * of the token are ignored.
+     *
+     * @param token The token to encode.
+     * @param credentials The credentials of the app.
+     * @return The token string.
+     */
+    public String encode(AccessToken2 token, AppCredentials credentials) {
+        startBuild();
+        try {
+            ByteBuf buf = content.reset();
+            buf.buffer.put(credentials.packedAppId());
+            buf.put(token.issueTs).put(token.expire).put(token.salt).put((short) token.services.size());
+            for (AccessToken2.Service service : token.services.values()) {
+                service.pack(buf);
+            }
+            lap(StageProfiler.Stage.PACK);
+            byte[] issueKey = credentials.issueKey(token.issueTs, this);
+            byte[] signingKey = hmac(intBytes(token.salt), issueKey, 0, issueKey.length);
+            lap(StageProfiler.Stage.SIGNING_KEY);
+            return finish(signingKey, token.services.keySet());
+        } catch (RuntimeException e) {
+            buildFailed(TokenMetrics.FailureReason.ERROR);
+            throw e;
+        }
+    }
+
+    /**
+     * Builds a token carrying a single RTC service from a pre-packed service prefix.
+     *
+     * @param credentials The credentials of the app.
+     * @param issueTs The issue timestamp.
+     * @param expire The token expiration, in seconds after {@code issueTs}.
+     * @param salt The salt.
+     * @param rtcPrefix The output of {@link #packRtcPrefix(String, TreeMap)}.
+     * @param account The user account, or the UID string.
+     * @return The token string.
+     */
+    public String encodeRtc(AppCredentials credentials, int issueTs, int expire, int salt, byte[] rtcPrefix, String account) {
+        startBuild();
+        try {
+            ByteBuf buf = content.reset();
+            buf.buffer.put(credentials.packedAppId());
+            buf.put(issueTs).put(expire).put(salt).put((short) 1);
+            buf.buffer.put(rtcPrefix);
+            buf.put(account);
+            lap(StageProfiler.Stage.PACK);
+            byte[] issueKey = credentials.issueKey(issueTs, this);
+            byte[] signingKey = hmac(intBytes(salt), issueKey, 0, issueKey.length);
+            lap(StageProfiler.Stage.SIGNING_KEY);
+            return finish(signingKey, RTC_ONLY);
+        } catch (RuntimeException e) {
+            buildFailed(TokenMetrics.FailureReason.ERROR);
+            throw e;
+        }
+    }
+
+    /**
+     * Packs the part of an RTC service shared by every user of a channel: the service type, the
+     * privileges and the channel name. The user account is appended per token.
+     *
+     * @param channelName The channel name.
+     * @param privileges The privileges and their expiration, as in {@link AccessToken2.Service#getPrivileges()}.
+     * @return The packed prefix.
+     */
+    public static byte[] packRtcPrefix(String channelName, TreeMap<Short, Integer> privileges) {
+        return new ByteBuf().put(AccessToken2.SERVICE_TYPE_RTC).putIntMap(privileges).put(channelName).asBytes();
+    }
+
+    /**
+     * Sets the deflate level of encoded tokens. Tokens are only byte-identical to those of
+     * {@link AccessToken2#build()} at the default level.
+     *
+     * @param compressionLevel A {@link Deflater} level from 0 to 9, or -1 for the default.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("invalid compression level: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Frees the native zlib memory of the deflater and the inflater now instead of when they are
+     * garbage collected. The codec stays usable and creates new ones when it needs them.
+     */
+    void end() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+    }
+
+    /**
+     * @return A random salt from the codec's own secure random generator.
+     */
+    public int nextSalt() {
+        if (random == null) {
+            random = new SecureRandom();
+        }
+        return random.nextInt();
+    }
+
+    private String finish(byte[] signingKey, Collection<Short> serviceTypes) {
+        byte[] body = content.buffer.array();
+        int bodyLength = content.buffer.position();
+        byte[] signature = hmac(signingKey, body, 0, bodyLength);
+
+        int packedLength = 2 + signature.length + bodyLength;
+        if (packed.length < packedLength) {
+            packed = new byte[Math.max(packedLength, packed.length * 2)];
+        }
+        packed[0] = (byte) signature.length;
+        packed[1] = (byte) (signature.length >>> 8);
+        System.arraycopy(signature, 0, packed, 2, signature.length);
+        System.arraycopy(body, 0, packed, 2 + signature.length, bodyLength);
+        lap(StageProfiler.Stage.SIGNATURE);
+
+        int compressedLength = deflate(packed, packedLength);
+        lap(StageProfiler.Stage.COMPRESS);
+        String token = AccessToken2.getVersion() + new String(BASE64.encode(output, 0, compressedLength));
+        lap(StageProfiler.Stage.BASE64_ENCODE);
+
+        if (metrics != null) {
+            short serviceType = serviceTypes.size() > 1 ? TokenMetrics.MULTIPLE_SERVICES
+                    : serviceTypes.isEmpty() ? 0 : serviceTypes.iterator().next();
+            metrics.tokenBuilt(AccessToken2.getVersion(), serviceType, System.nanoTime() - startedAt, packedLength, compressedLength, token.length());
+        }
+        if (event != null) {
+            TokenEvents.built(event, AccessToken2.getVersion(), TokenEvents.serviceTypes(serviceTypes), packedLength, token);
+            event = null;
+        }
+        return token;
+    }
+
+    /**
+     * Starts the metrics, flight recorder event and stage profile of a build, as enabled.
+     */
+    private void startBuild() {
+        metrics = TokenMetrics.installed();
+        startedAt = metrics == null ? 0 : System.nanoTime();
+        event = TokenEvents.beginBuild();
+        profiling = StageProfiler.sample();
+        if (profiling) {
+            profileMark = System.nanoTime();
+        }
+    }
+
+    private void buildFailed(TokenMetrics.FailureReason reason) {
+        if (metrics != null) {
+            metrics.operationFailed(AccessToken2.getVersion(), TokenMetrics.Operation.BUILD, reason);
+        }
+        if (event != null) {
+            TokenEvents.failed(event, AccessToken2.getVersion(), reason);
+            event = null;
+        }
+    }
+
+    private void lap(StageProfiler.Stage stage) {
+        if (profiling) {
+            profileMark = StageProfiler.lap(stage, profileMark);
+        }
+    }
+
+    private int deflate(byte[] data, int length) {
+        if (deflater == null) {
+            deflater = new Deflater();
+        }
+        deflater.reset();
+        deflater.setLevel(compressionLevel);
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        int written = 0;
+        while (!deflater.finished()) {
+            if (written == output.length) {
+                byte[] grown = new byte[output.length * 2];
+                System.arraycopy(output, 0, grown, 0, written);
+                output = grown;
+            }
+            written += deflater.deflate(output, written, output.length - written);
+        }
+        return written;
+    }
+
+    /**
+     * Inflates compressed token content into the codec's output buffer.
+     *
+     * @param data The compressed content.
+     * @return The number of bytes written to {@link #output()}.
+     * @throws DataFormatException If the content is not valid deflate data.
+     */
+    int inflate(byte[] data) throws DataFormatException {
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        inflater.reset();
+        inflater.setInput(data);
+        int length = 0;
+        while (!inflater.finished()) {
+            if (length == output.length) {
+                byte[] grown = new byte[output.length * 2];
+                System.arraycopy(output, 0, grown, 0, length);
+                output = grown;
+            }
+            int n = inflater.inflate(output, length, output.length - length);
+            if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                break;
+            }
+            length += n;
+        }
+        return length;
+    }
+
+    /**
+     * @return The buffer the last {@link #inflate(byte[])} call wrote into. Encoding overwrites it.
+     */
+    byte[] output() {
+        return output;
+    }
+
+    /**
+     * Derives the signing key of a token, as {@link AccessToken2#getSign()} does.
+     */
+    byte[] signingKey(byte[] appCert, int issueTs, int salt) {
+        byte[] signing = hmac(intBytes(issueTs), appCert, 0, appCert.length);
+        return hmac(intBytes(salt), signing, 0, signing.length);
+    }
+
+    /**
+     * Computes HMAC-SHA256 over a range of bytes.
+     */
+    byte[] hmac(byte[] key, byte[] data, int offset, int length) {
+        try {
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        mac.update(data, offset, length);
+        return mac.doFinal();
+    }
+
+    /**
+     * Computes HMAC-SHA256 keyed with an App Certificate, as version 006 signatures are. The keyed
+     * signer of the last credentials used is kept.
+     */
+    byte[] hmacWithCertificate(AppCredentials credentials, byte[] data, int offset, int length) {
+        if (certificateMacOwner != credentials) {
+            certificateMac = credentials.newCertificateMac();
+            certificateMacOwner = credentials;
+        }
+        certificateMac.update(data, offset, length);
+        return certificateMac.doFinal();
+    }
+
+    static byte[] intBytes(int v) {
+        return new byte[] { (byte) v, (byte) (v >>> 8), (byte) (v >>> 16), (byte) (v >>> 24) };
+    }
+
+    static boolean regionEquals(byte[] expected, byte[] data, int offset, int length) {
+        if (expected.length != length) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < length; i++) {
+            diff |= expected[i] ^ data[offset + i];
+        }
+        return diff == 0;
+    }
+}
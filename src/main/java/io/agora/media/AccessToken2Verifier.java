@@ -0,0 +1,384 @@
+package io.agora.media;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+
+/**
+ * Parses and verifies version 007 tokens built by {@link AccessToken2}.
+ * <p>
+ * {@link AccessToken2#parse(String)} only decodes a token; this verifier also checks the App ID,
+ * recomputes the signature with the App Certificate and checks the token expiration. Decoding and
+ * signing use the calling thread's {@link AccessToken2Codec}, so each worker thread reuses its own
+ * Mac, Inflater and buffers. Instances are thread-safe.
+ * <p>
+ * During an App Certificate rotation a verifier can accept a primary and a secondary certificate.
+ * The first signing step, HMAC(issueTs, certificate), is cached per certificate and issue second,
+ * and the verifier remembers which certificate signed the tokens of each range of issue times,
+ * so a token is normally checked against one certificate only, even while both are in use.
+ */
+public class AccessToken2Verifier {
+    private static final int RANGE_SHIFT = 6;
+    private static final int RANGE_SLOTS = 64;
+    private static final AtomicLong CHANGES = new AtomicLong();
+
+    private final String appId;
+    private final IssueKeys primaryKeys;
+    private final IssueKeys secondaryKeys;
+    private final AtomicIntegerArray signerByRange = new AtomicIntegerArray(RANGE_SLOTS);
+    private final LongAdder fallbacks = new LongAdder();
+    private volatile RevocationList revocationList;
+    private volatile ChannelWatermarks channelWatermarks;
+    private volatile ReplayGuard replayGuard;
+    private volatile long configVersion;
+
+    /**
+     * Creates a verifier for the tokens of one app.
+     *
+     * @param appId The App ID of your Agora project.
+     * @param appCertificate The App Certificate of your Agora project.
+     */
+    public AccessToken2Verifier(String appId, String appCertificate) {
+        this(appId, appCertificate, null);
+    }
+
+    /**
+     * Creates a verifier that accepts tokens signed with either of two App Certificates.
+     *
+     * @param appId The App ID of your Agora project.
+     * @param primaryCertificate The App Certificate most tokens are expected to be signed with.
+     * @param secondaryCertificate The other accepted App Certificate, or null.
+     */
+    public AccessToken2Verifier(String appId, String primaryCertificate, String secondaryCertificate) {
+        if (!Utils.isUUID(appId) || !Utils.isUUID(primaryCertificate)
+                || (secondaryCertificate != null && !Utils.isUUID(secondaryCertificate))) {
+            throw new IllegalArgumentException("appId and appCertificate must be 32 hex characters");
+        }
+        this.appId = appId;
+        this.primaryKeys = new IssueKeys(primaryCertificate.getBytes());
+        this.secondaryKeys = secondaryCertificate == null ? null : new IssueKeys(secondaryCertificate.getBytes());
+    }
+
+    /**
+     * Creates a verifier for a state of a certificate rotation: the current certificate is
+     * primary and the certificate being phased in or out, if any, is secondary.
+     *
+     * @param snapshot The rotation state.
+     * @param now The current time, in seconds since 1/1/1970.
+     * @return The verifier.
+     */
+    public static AccessToken2Verifier forRotation(RotatingCredentials.Snapshot snapshot, int now) {
+        AppCredentials secondary = snapshot.getNext() != null ? snapshot.getNext() : snapshot.getPrevious(now);
+        return new AccessToken2Verifier(snapshot.getCurrent().getAppId(), snapshot.getCurrent().getAppCertificate(),
+                secondary == null ? null : secondary.getAppCertificate());
+    }
+
+    /**
+     * Rejects tokens revoked before their expiration with {@link VerifyResult#REVOKED}. The list is
+     * checked before the signature, so revoked tokens cost no HMAC.
+     *
+     * @param revocationList The revoked tokens, or null to revoke none (the default).
+     */
+    public void setRevocationList(RevocationList revocationList) {
+        this.revocationList = revocationList;
+        configVersion = nextVersion();
+    }
+
+    public RevocationList getRevocationList() {
+        return revocationList;
+    }
+
+    /**
+     * Rejects RTC tokens issued before the watermark of their channel with
+     * {@link VerifyResult#REVOKED}. The channel is looked up from the decoded token bytes before
+     * the RTC service is unpacked and before the signature is checked.
+     *
+     * @param channelWatermarks The channel watermarks, or null to revoke no channel (the default).
+     */
+    public void setChannelWatermarks(ChannelWatermarks channelWatermarks) {
+        this.channelWatermarks = channelWatermarks;
+        configVersion = nextVersion();
+    }
+
+    public ChannelWatermarks getChannelWatermarks() {
+        return channelWatermarks;
+    }
+
+    /**
+     * Accepts each token once: later presentations of a token are rejected with
+     * {@link VerifyResult#REPLAYED}. Only authentic, unexpired tokens are recorded, so forged or
+     * expired tokens cannot fill the guard. Tokens that expire later than the window of the guard
+     * are rejected with {@link VerifyResult#REPLAY_WINDOW_EXCEEDED}: the guard could not remember them.
+     *
+     * @param replayGuard The tokens already presented, or null to accept tokens any number of times (the default).
+     */
+    public void setReplayGuard(ReplayGuard replayGuard) {
+        this.replayGuard = replayGuard;
+        configVersion = nextVersion();
+    }
+
+    public ReplayGuard getReplayGuard() {
+        return replayGuard;
+    }
+
+    /**
+     * @return The App ID this verifier accepts.
+     */
+    public String getAppId() {
+        return appId;
+    }
+
+    /**
+     * Verifies a token at the current time.
+     *
+     * @param token The version 007 token.
+     * @return The verification, never null.
+     */
+    public Verification verify(String token) {
+        return verify(token, Utils.getTimestamp());
+    }
+
+    /**
+     * Verifies a token.
+     *
+     * @param token The version 007 token.
+     * @param now The current time, in seconds since 1/1/1970.
+     * @return The verification, never null.
+     */
+    public Verification verify(String token, int now) {
+        if (token == null || token.length() <= Utils.VERSION_LENGTH) {
+            return Verification.MALFORMED;
+        }
+        if (!token.startsWith(AccessToken2.getVersion())) {
+            return Verification.VERSION_MISMATCH;
+        }
+
+        AccessToken2Codec codec = AccessToken2Codec.forCurrentThread();
+        AccessToken2 accessToken = new AccessToken2();
+        int length;
+        int signatureOffset;
+        int signatureLength;
+        int contentOffset;
+        try {
+            length = codec.inflate(Utils.base64Decode(token.substring(Utils.VERSION_LENGTH)));
+            ByteBuf buff = new ByteBuf(codec.output(), length);
+            signatureLength = buff.readShort() & 0xFFFF;
+            signatureOffset = buff.buffer.position();
+            buff.buffer.position(signatureOffset + signatureLength);
+            contentOffset = buff.buffer.position();
+
+            accessToken.appId = buff.readString();
+            if (!appId.equals(accessToken.appId)) {
+                return Verification.APP_ID_MISMATCH;
+            }
+            accessToken.issueTs = buff.readInt();
+            accessToken.expire = buff.readInt();
+            accessToken.salt = buff.readInt();
+            RevocationList revoked = revocationList;
+            if (revoked != null && revoked.isRevoked(appId, accessToken.salt, accessToken.issueTs)) {
+                return Verification.REVOKED;
+            }
+            ChannelWatermarks watermarks = channelWatermarks;
+            short servicesNum = buff.readShort();
+
+            for (int i = 0; i < servicesNum; i++) {
+                short serviceType = buff.readShort();
+                AccessToken2.Service service;
+                try {
+                    service = accessToken.getService(serviceType);
+                } catch (IllegalArgumentException e) {
+                    return Verification.UNKNOWN_SERVICE;
+                }
+                if (watermarks != null && serviceType == AccessToken2.SERVICE_TYPE_RTC
+                        && accessToken.issueTs < channelWatermark(watermarks, buff, length)) {
+                    return Verification.REVOKED;
+                }
+                service.unpack(buff);
+                accessToken.services.put(serviceType, service);
+            }
+        } catch (DataFormatException | RuntimeException e) {
+            return Verification.MALFORMED;
+        }
+
+        int issueTs = accessToken.issueTs;
+        int range = issueTs >>> RANGE_SHIFT;
+        int slot = range & (RANGE_SLOTS - 1);
+        int remembered = signerByRange.get(slot);
+        boolean secondaryFirst = secondaryKeys != null && remembered >>> 1 == range && (remembered & 1) == 1;
+
+        IssueKeys first = secondaryFirst ? secondaryKeys : primaryKeys;
+        if (!signedWith(first, codec, accessToken, length, signatureOffset, signatureLength, contentOffset)) {
+            IssueKeys second = secondaryFirst ? primaryKeys : secondaryKeys;
+            if (second == null) {
+                return Verification.SIGNATURE_MISMATCH;
+            }
+            fallbacks.increment();
+            if (!signedWith(second, codec, accessToken, length, signatureOffset, signatureLength, contentOffset)) {
+                return Verification.SIGNATURE_MISMATCH;
+            }
+            signerByRange.set(slot, range << 1 | (second == secondaryKeys ? 1 : 0));
+        }
+        if ((long) accessToken.issueTs + accessToken.expire < now) {
+            return new Verification(VerifyResult.EXPIRED, accessToken);
+        }
+        ReplayGuard guard = replayGuard;
+        if (guard != null) {
+            int expireAt = (int) Math.min(Integer.MAX_VALUE, (long) accessToken.issueTs + accessToken.expire);
+            if (!guard.covers(expireAt, now)) {
+                return Verification.REPLAY_WINDOW_EXCEEDED;
+            }
+            if (!guard.checkAndRecord(appId, accessToken.salt, accessToken.issueTs, expireAt, now)) {
+                return Verification.REPLAYED;
+            }
+        }
+        return new Verification(VerifyResult.OK, accessToken);
+    }
+
+    /**
+     * Tells {@link TokenCache} whether the tokens it verified earlier may since have been revoked.
+     * The value grows whenever a token or channel is revoked or the revocation settings change, so
+     * a cached verification is only trusted while the value it was loaded under is current. While
+     * a replay guard is installed, verifications must not be cached at all.
+     *
+     * @return The generation of the revocation state, or {@link TokenCache#UNCACHEABLE}.
+     */
+    long cacheGeneration() {
+        if (replayGuard != null) {
+            return TokenCache.UNCACHEABLE;
+        }
+        long generation = configVersion;
+        RevocationList revoked = revocationList;
+        if (revoked != null) {
+            generation = Math.max(generation, revoked.version());
+        }
+        ChannelWatermarks watermarks = channelWatermarks;
+        if (watermarks != null) {
+            generation = Math.max(generation, watermarks.version());
+        }
+        return generation;
+    }
+
+    /**
+     * @return A version greater than every version handed out before, shared by the revocation
+     * state of all verifiers so that swapping one component for another always changes the generation.
+     */
+    static long nextVersion() {
+        return CHANGES.incrementAndGet();
+    }
+
+    /**
+     * @return The number of tokens checked against both certificates because the one tried first did not match.
+     */
+    public long getFallbackCount() {
+        return fallbacks.sum();
+    }
+
+    /**
+     * Reads the channel name of a packed RTC service in place, skipping its privileges, and looks
+     * up its watermark. The buffer position is left unchanged.
+     */
+    private int channelWatermark(ChannelWatermarks watermarks, ByteBuf buff, int length) {
+        byte[] data = buff.buffer.array();
+        int position = buff.buffer.position();
+        int privileges = buff.buffer.getShort(position) & 0xFFFF;
+        int channelLength = position + 2 + privileges * 6;
+        if (channelLength + 2 > length) {
+            throw new IllegalArgumentException("truncated RTC service");
+        }
+        int channelOffset = channelLength + 2;
+        int channelBytes = buff.buffer.getShort(channelLength) & 0xFFFF;
+        if (channelOffset + channelBytes > length) {
+            throw new IllegalArgumentException("truncated RTC service");
+        }
+        return watermarks.getWatermark(appId, data, channelOffset, channelBytes);
+    }
+
+    private static boolean signedWith(IssueKeys keys, AccessToken2Codec codec, AccessToken2 accessToken, int length,
+            int signatureOffset, int signatureLength, int contentOffset) {
+        byte[] issueKey = keys.get(accessToken.issueTs, codec);
+        byte[] signing = codec.hmac(AccessToken2Codec.intBytes(accessToken.salt), issueKey, 0, issueKey.length);
+        byte[] signature = codec.hmac(signing, codec.output(), contentOffset, length - contentOffset);
+        return AccessToken2Codec.regionEquals(signature, codec.output(), signatureOffset, signatureLength);
+    }
+
+    /**
+     * Direct-mapped cache of HMAC(issueTs, certificate) for one certificate.
+     */
+    private static final class IssueKeys {
+        private static final int SLOTS = 256;
+
+        private final byte[] certificate;
+        private final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(SLOTS);
+
+        IssueKeys(byte[] certificate) {
+            this.certificate = certificate;
+        }
+
+        byte[] get(int issueTs, AccessToken2Codec codec) {
+            int slot = issueTs & (SLOTS - 1);
+            Entry entry = entries.get(slot);
+            if (entry != null && entry.issueTs == issueTs) {
+                return entry.key;
+            }
+            byte[] key = codec.hmac(AccessToken2Codec.intBytes(issueTs), certificate, 0, certificate.length);
+            entries.set(slot, new Entry(issueTs, key));
+            return key;
+        }
+
+        private static final class Entry {
+            final int issueTs;
+            final byte[] key;
+
+            Entry(int issueTs, byte[] key) {
+                this.issueTs = issueTs;
+                this.key = key;
+            }
+        }
+    }
+
+    /**
+     * Result of verifying a token. The parsed token is shared with caches and must not be modified.
+     */
+    public static class Verification {
+        static final Verification MALFORMED = new Verification(VerifyResult.MALFORMED, null);
+        static final Verification VERSION_MISMATCH = new Verification(VerifyResult.VERSION_MISMATCH, null);
+        static final Verification APP_ID_MISMATCH = new Verification(VerifyResult.APP_ID_MISMATCH, null);
+        static final Verification UNKNOWN_SERVICE = new Verification(VerifyResult.UNKNOWN_SERVICE, null);
+        static final Verification SIGNATURE_MISMATCH = new Verification(VerifyResult.SIGNATURE_MISMATCH, null);
+        static final Verification REVOKED = new Verification(VerifyResult.REVOKED, null);
+        static final Verification REPLAYED = new Verification(VerifyResult.REPLAYED, null);
+        static final Verification REPLAY_WINDOW_EXCEEDED = new Verification(VerifyResult.REPLAY_WINDOW_EXCEEDED, null);
+
+        private final VerifyResult result;
+        private final AccessToken2 token;
+
+        Verification(VerifyResult result, AccessToken2 token) {
+            this.result = result;
+            this.token = token;
+        }
+
+        public VerifyResult getResult() {
+            return result;
+        }
+
+        public boolean isValid() {
+            return result == VerifyResult.OK;
+        }
+
+        /**
+         * @return The parsed token, or null if the token could not be parsed or its signature does not match.
+         */
+        public AccessToken2 getToken() {
+            return token;
+        }
+
+        /**
+         * @return The token expiration timestamp, in seconds since 1/1/1970, or 0 if the token was not parsed.
+         */
+        public long getExpireAt() {
+            return token == null ? 0 : (long) token.issueTs + token.expire;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package io.agora.media;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Decodes and verifies version 006 tokens built by {@link AccessToken}.
+ * <p>
+ * Unlike {@link AccessToken#fromString(String)}, the decoder reads the packed content in place
+ * instead of building {@code PackContent} and {@code PrivilegeMessage} objects, so no random salt
+ * or timestamp is generated only to be overwritten. Verification rejects tokens whose channel or
+ * uid CRC does not match before computing any HMAC, then checks the signature with a signer keyed
+ * once per App Certificate, and finally the expiration of both the token and the requested
+ * privilege.
+ * <p>
+ * Instances are thread-safe.
+ */
+public class AccessTokenVerifier {
+    private static final int HEADER_LENGTH = Utils.VERSION_LENGTH + Utils.APP_ID_LENGTH;
+    private static final long NOT_GRANTED = -1;
+
+    private final String appId;
+    private final byte[] appIdBytes;
+    private final ThreadLocal<Mac> signer;
+
+    /**
+     * Creates a verifier for the tokens of one app.
+     *
+     * @param appId The App ID of your Agora project.
+     * @param appCertificate The App Certificate of your Agora project.
+     */
+    public AccessTokenVerifier(String appId, String appCertificate) {
+        if (!Utils.isUUID(appId) || !Utils.isUUID(appCertificate)) {
+            throw new IllegalArgumentException("appId and appCertificate must be 32 hex characters");
+        }
+        this.appId = appId;
+        this.appIdBytes = appId.getBytes(StandardCharsets.UTF_8);
+        final SecretKeySpec key = new SecretKeySpec(appCertificate.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.signer = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+                return mac;
+            } catch (Exception e) {
+                throw new IllegalStateException("HmacSHA256 is not available", e);
+            }
+        });
+    }
+
+    /**
+     * Verifies a token for a channel and user at the current time. The token must grant
+     * {@link AccessToken.Privileges#kJoinChannel}, or {@link AccessToken.Privileges#kRtmLogin} for
+     * RTM tokens.
+     *
+     * @param token The version 006 token.
+     * @param channelName The channel the user joins. For RTM tokens, the RTM user ID.
+     * @param uid The user ID as a string, or an empty string for RTM tokens and uid 0.
+     * @return The verification result.
+     */
+    public VerifyResult verify(String token, String channelName, String uid) {
+        return verify(token, channelName, uid, null, Utils.getTimestamp());
+    }
+
+    /**
+     * Verifies a token for a channel and user. The token must grant
+     * {@link AccessToken.Privileges#kJoinChannel}, or {@link AccessToken.Privileges#kRtmLogin} for
+     * RTM tokens.
+     *
+     * @param token The version 006 token.
+     * @param channelName The channel the user joins. For RTM tokens, the RTM user ID.
+     * @param uid The user ID as a string, or an empty string for RTM tokens and uid 0.
+     * @param now The current time, in seconds since 1/1/1970.
+     * @return The verification result.
+     */
+    public VerifyResult verify(String token, String channelName, String uid, int now) {
+        return verify(token, channelName, uid, null, now);
+    }
+
+    /**
+     * Verifies that a token grants a privilege to a user in a channel at the current time.
+     *
+     * @param token The version 006 token.
+     * @param channelName The channel the user joins. For RTM tokens, the RTM user ID.
+     * @param uid The user ID as a string, or an empty string for RTM tokens and uid 0.
+     * @param privilege The privilege the user requests.
+     * @return The verification result.
+     */
+    public VerifyResult verify(String token, String channelName, String uid, AccessToken.Privileges privilege) {
+        return verify(token, channelName, uid, privilege, Utils.getTimestamp());
+    }
+
+    /**
+     * Verifies that a token grants a privilege to a user in a channel.
+     *
+     * @param token The version 006 token.
+     * @param channelName The channel the user joins. For RTM tokens, the RTM user ID.
+     * @param uid The user ID as a string, or an empty string for RTM tokens and uid 0.
+     * @param privilege The privilege the user requests, or null for the privilege to join the
+     *                  channel or, for RTM tokens, to log in.
+     * @param now The current time, in seconds since 1/1/1970.
+     * @return The verification result.
+     */
+    public VerifyResult verify(String token, String channelName, String uid, AccessToken.Privileges privilege, int now) {
+        if (token == null || token.length() <= HEADER_LENGTH) {
+            return VerifyResult.MALFORMED;
+        }
+        if (channelName == null) {
+            return VerifyResult.CHANNEL_MISMATCH;
+        }
+        if (uid == null) {
+            return VerifyResult.UID_MISMATCH;
+        }
+        if (!token.startsWith(AccessToken.getVersion())) {
+            return VerifyResult.VERSION_MISMATCH;
+        }
+        if (!token.regionMatches(Utils.VERSION_LENGTH, appId, 0, Utils.APP_ID_LENGTH)) {
+            return VerifyResult.APP_ID_MISMATCH;
+        }
+
+        byte[] content = Utils.base64Decode(token.substring(HEADER_LENGTH));
+        ByteBuffer in = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+        int signatureOffset;
+        int signatureLength;
+        int crcChannelName;
+        int crcUid;
+        int messageOffset;
+        int messageLength;
+        try {
+            signatureLength = in.getShort() & 0xFFFF;
+            signatureOffset = in.position();
+            in.position(signatureOffset + signatureLength);
+            crcChannelName = in.getInt();
+            crcUid = in.getInt();
+            messageLength = in.getShort() & 0xFFFF;
+            messageOffset = in.position();
+            if (messageLength < 8 || messageOffset + messageLength > content.length) {
+                return VerifyResult.MALFORMED;
+            }
+        } catch (RuntimeException e) {
+            return VerifyResult.MALFORMED;
+        }
+
+        byte[] channelBytes = channelName.getBytes(StandardCharsets.UTF_8);
+        if (Utils.crc32(channelBytes) != crcChannelName) {
+            return VerifyResult.CHANNEL_MISMATCH;
+        }
+        byte[] uidBytes = uid.getBytes(StandardCharsets.UTF_8);
+        if (Utils.crc32(uidBytes) != crcUid) {
+            return VerifyResult.UID_MISMATCH;
+        }
+
+        Mac mac = signer.get();
+        mac.update(appIdBytes);
+        mac.update(channelBytes);
+        mac.update(uidBytes);
+        mac.update(content, messageOffset, messageLength);
+        byte[] expected = mac.doFinal();
+        if (!AccessToken2Codec.regionEquals(expected, content, signatureOffset, signatureLength)) {
+            return VerifyResult.SIGNATURE_MISMATCH;
+        }
+
+        int ts = in.getInt(messageOffset + 4);
+        if (ts != 0 && ts < now) {
+            return VerifyResult.EXPIRED;
+        }
+        int count = messageLength < 10 ? 0 : in.getShort(messageOffset + 8) & 0xFFFF;
+        if (10 + count * 6 > messageLength) {
+            return VerifyResult.MALFORMED;
+        }
+        long expire = privilegeExpire(in, messageOffset + 10, count, privilege);
+        if (expire == NOT_GRANTED) {
+            return VerifyResult.PRIVILEGE_NOT_GRANTED;
+        }
+        if (expire != 0 && expire < now) {
+            return VerifyResult.EXPIRED;
+        }
+        return VerifyResult.OK;
+    }
+
+    /**
+     * Finds the expiration of a privilege in the packed privilege map.
+     *
+     * @return The expiration timestamp, 0 if it is that of the token, or {@link #NOT_GRANTED}.
+     */
+    private static long privilegeExpire(ByteBuffer in, int offset, int count, AccessToken.Privileges privilege) {
+        long rtmLogin = NOT_GRANTED;
+        for (int i = 0; i < count; i++) {
+            short key = in.getShort(offset + i * 6);
+            long expire = in.getInt(offset + i * 6 + 2) & 0xFFFFFFFFL;
+            if (privilege != null ? key == privilege.intValue : key == AccessToken.Privileges.kJoinChannel.intValue) {
+                return expire;
+            }
+            if (privilege == null && key == AccessToken.Privileges.kRtmLogin.intValue) {
+                rtmLogin = expire;
+            }
+        }
+        return rtmLogin;
+    }
+
+    /**
+     * Decodes a version 006 token without verifying it.
+     *
+     * @param token The version 006 token.
+     * @return The decoded token, or null if the token is malformed.
+     */
+    public static Decoded decode(String token) {
+        if (token == null || token.length() <= HEADER_LENGTH || !token.startsWith(AccessToken.getVersion())) {
+            return null;
+        }
+        try {
+            ByteBuf in = new ByteBuf(Utils.base64Decode(token.substring(HEADER_LENGTH)));
+            byte[] signature = in.readBytes();
+            int crcChannelName = in.readInt();
+            int crcUid = in.readInt();
+            byte[] rawMessage = in.readBytes();
+
+            ByteBuf message = new ByteBuf(rawMessage);
+            int salt = message.readInt();
+            int ts = message.readInt();
+            int count = message.readShort();
+            short[] privileges = new short[count];
+            int[] expires = new int[count];
+            for (int i = 0; i < count; i++) {
+                privileges[i] = message.readShort();
+                expires[i] = message.readInt();
+            }
+            return new Decoded(token.substring(Utils.VERSION_LENGTH, HEADER_LENGTH), signature, crcChannelName, crcUid,
+                    rawMessage, salt, ts, privileges, expires);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The fields of a decoded version 006 token.
+     */
+    public static class Decoded {
+        private final String appId;
+        private final byte[] signature;
+        private final int crcChannelName;
+        private final int crcUid;
+        private final byte[] messageRawContent;
+        private final int salt;
+        private final int ts;
+        private final short[] privileges;
+        private final int[] expires;
+
+        Decoded(String appId, byte[] signature, int crcChannelName, int crcUid, byte[] messageRawContent, int salt, int ts,
+                short[] privileges, int[] expires) {
+            this.appId = appId;
+            this.signature = signature;
+            this.crcChannelName = crcChannelName;
+            this.crcUid = crcUid;
+            this.messageRawContent = messageRawContent;
+            this.salt = salt;
+            this.ts = ts;
+            this.privileges = privileges;
+            this.expires = expires;
+        }
+
+        public String getAppId() {
+            return appId;
+        }
+
+        public byte[] getSignature() {
+            return signature.clone();
+        }
+
+        public int getCrcChannelName() {
+            return crcChannelName;
+        }
+
+        public int getCrcUid() {
+            return crcUid;
+        }
+
+        public byte[] getMessageRawContent() {
+            return messageRawContent.clone();
+        }
+
+        public int getSalt() {
+            return salt;
+        }
+
+        /**
+         * @return The token expiration timestamp, in seconds since 1/1/1970.
+         */
+        public int getTs() {
+            return ts;
+        }
+
+        public int getPrivilegeCount() {
+            return privileges.length;
+        }
+
+        /**
+         * @param privilege The privilege.
+         * @return Whether the token grants the privilege.
+         */
+        public boolean hasPrivilege(AccessToken.Privileges privilege) {
+            return indexOf(privilege.intValue) >= 0;
+        }
+
+        /**
+         * @param privilege The privilege.
+         * @return The privilege expiration timestamp, or 0 if the token does not grant it.
+         */
+        public int getPrivilegeExpire(AccessToken.Privileges privilege) {
+            int i = indexOf(privilege.intValue);
+            return i < 0 ? 0 : expires[i];
+        }
+
+        private int indexOf(short privilege) {
+            for (int i = 0; i < privileges.length; i++) {
+                if (privileges[i] == privilege) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
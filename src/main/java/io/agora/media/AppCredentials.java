@@ -0,0 +1,132 @@
+package io.agora.media;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A validated App ID and App Certificate pair with the signing state derived from it.
+ * <p>
+ * The builders take both values as strings and validate them on every call. Credentials are
+ * validated once, when they are created, and keep what every token of the app needs: the packed
+ * App ID, the certificate bytes, a signer keyed with the certificate for version 006 tokens and
+ * the first step of the version 007 signing key for the current issue second, which all tokens
+ * issued in that second share. The memory held per app is fixed.
+ * <p>
+ * Instances are immutable apart from that memo and are thread-safe.
+ */
+public final class AppCredentials {
+    private final String appId;
+    private final String appCertificate;
+    private final byte[] packedAppId;
+    private final byte[] certificateBytes;
+    private final Mac certificateMac;
+    private volatile IssueKey issueKey;
+
+    /**
+     * Validates and prepares credentials.
+     *
+     * @param appId The App ID of your Agora project.
+     * @param appCertificate The App Certificate of your Agora project.
+     * @throws IllegalArgumentException If either value is not a 32-character hex string.
+     */
+    public AppCredentials(String appId, String appCertificate) {
+        if (appId == null || !Utils.isUUID(appId)) {
+            throw new IllegalArgumentException("invalid appId");
+        }
+        if (appCertificate == null || !Utils.isUUID(appCertificate)) {
+            throw new IllegalArgumentException("invalid appCertificate");
+        }
+        this.appId = appId;
+        this.appCertificate = appCertificate;
+        this.packedAppId = new ByteBuf().put(appId).asBytes();
+        this.certificateBytes = appCertificate.getBytes();
+        try {
+            this.certificateMac = Mac.getInstance("HmacSHA256");
+            this.certificateMac.init(new SecretKeySpec(certificateBytes, "HmacSHA256"));
+        } catch (Exception e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    public String getAppId() {
+        return appId;
+    }
+
+    public String getAppCertificate() {
+        return appCertificate;
+    }
+
+    /**
+     * @return The App ID as packed into version 007 token content.
+     */
+    byte[] packedAppId() {
+        return packedAppId;
+    }
+
+    byte[] certificateBytes() {
+        return certificateBytes;
+    }
+
+    /**
+     * @return A new HMAC-SHA256 signer already keyed with the App Certificate.
+     */
+    Mac newCertificateMac() {
+        try {
+            return (Mac) certificateMac.clone();
+        } catch (CloneNotSupportedException e) {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(certificateBytes, "HmacSHA256"));
+                return mac;
+            } catch (Exception inner) {
+                throw new IllegalStateException(inner);
+            }
+        }
+    }
+
+    /**
+     * Returns HMAC(issueTs, certificate), the first step of the version 007 signing key.
+     * The value for the latest issue second is kept, so it is computed once per second.
+     */
+    byte[] issueKey(int issueTs, AccessToken2Codec codec) {
+        IssueKey current = issueKey;
+        if (current != null && current.issueTs == issueTs) {
+            return current.key;
+        }
+        byte[] key = codec.hmac(AccessToken2Codec.intBytes(issueTs), certificateBytes, 0, certificateBytes.length);
+        issueKey = new IssueKey(issueTs, key);
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AppCredentials)) {
+            return false;
+        }
+        AppCredentials other = (AppCredentials) o;
+        return appId.equals(other.appId) && appCertificate.equals(other.appCertificate);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * appId.hashCode() + appCertificate.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "AppCredentials{appId=" + appId + "}";
+    }
+
+    private static final class IssueKey {
+        final int issueTs;
+        final byte[] key;
+
+        IssueKey(int issueTs, byte[] key) {
+            this.issueTs = issueTs;
+            this.key = key;
+        }
+    }
+}
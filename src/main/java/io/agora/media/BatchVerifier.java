@@ -0,0 +1,119 @@
+package io.agora.media;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Verifies large batches of version 007 tokens in parallel.
+ * <p>
+ * A batch is split into index ranges that are verified on a {@link ForkJoinPool}. Each worker
+ * thread decodes and signs with its own {@link AccessToken2Codec}, and writes only its own slots
+ * of the result array, so workers share no mutable state and throughput grows with the number of
+ * cores. All tokens of a batch are checked against the same timestamp; tokens of a stream are
+ * checked against the time each one is verified at.
+ */
+public class BatchVerifier {
+    private static final int MIN_SPLIT_SIZE = 64;
+
+    private final AccessToken2Verifier verifier;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a batch verifier running on the common pool.
+     *
+     * @param verifier The verifier used for each token.
+     */
+    public BatchVerifier(AccessToken2Verifier verifier) {
+        this(verifier, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a batch verifier.
+     *
+     * @param verifier The verifier used for each token.
+     * @param pool The pool the batches run on.
+     */
+    public BatchVerifier(AccessToken2Verifier verifier, ForkJoinPool pool) {
+        this.verifier = verifier;
+        this.pool = pool;
+    }
+
+    /**
+     * Verifies a batch of tokens at the current time.
+     *
+     * @param tokens The tokens.
+     * @return The verifications, in the iteration order of {@code tokens}.
+     */
+    public List<AccessToken2Verifier.Verification> verifyAll(Collection<String> tokens) {
+        return verifyAll(tokens, Utils.getTimestamp());
+    }
+
+    /**
+     * Verifies a batch of tokens.
+     *
+     * @param tokens The tokens.
+     * @param now The current time, in seconds since 1/1/1970.
+     * @return The verifications, in the iteration order of {@code tokens}.
+     */
+    public List<AccessToken2Verifier.Verification> verifyAll(Collection<String> tokens, int now) {
+        String[] input = tokens.toArray(new String[0]);
+        AccessToken2Verifier.Verification[] output = new AccessToken2Verifier.Verification[input.length];
+        int threshold = Math.max(MIN_SPLIT_SIZE, input.length / (pool.getParallelism() * 8));
+        pool.invoke(new VerifyTask(input, output, 0, input.length, threshold, now));
+        return Arrays.asList(output);
+    }
+
+    /**
+     * Verifies a stream of tokens at the current time.
+     * <p>
+     * The tokens are consumed and verified in parallel on this verifier's pool before the method
+     * returns, each against the time it is verified at; the returned stream holds the
+     * verifications in the encounter order of {@code tokens}.
+     *
+     * @param tokens The tokens.
+     * @return The verifications.
+     */
+    public Stream<AccessToken2Verifier.Verification> verifyAll(Stream<String> tokens) {
+        // A parallel stream runs on the pool of the task that starts its terminal operation.
+        List<AccessToken2Verifier.Verification> verifications = pool.submit(() -> tokens.parallel()
+                .map(token -> verifier.verify(token, Utils.getTimestamp()))
+                .collect(Collectors.toList())).join();
+        return verifications.stream();
+    }
+
+    private final class VerifyTask extends RecursiveAction {
+        private final String[] input;
+        private final AccessToken2Verifier.Verification[] output;
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final int now;
+
+        VerifyTask(String[] input, AccessToken2Verifier.Verification[] output, int from, int to, int threshold, int now) {
+            this.input = input;
+            this.output = output;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.now = now;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                for (int i = from; i < to; i++) {
+                    output[i] = verifier.verify(input[i], now);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new VerifyTask(input, output, from, middle, threshold, now),
+                    new VerifyTask(input, output, middle, to, threshold, now));
+        }
+    }
+}
@@ -18,6 +18,15 @@ public class ByteBuf {
         this.buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
     }
 
+    ByteBuf(byte[] bytes, int length) {
+        this.buffer = ByteBuffer.wrap(bytes, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    ByteBuf reset() {
+        buffer.clear();
+        return this;
+    }
+
     public byte[] asBytes() {
         byte[] out = new byte[buffer.position()];
         buffer.rewind();
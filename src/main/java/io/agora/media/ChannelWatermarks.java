@@ -0,0 +1,203 @@
+package io.agora.media;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Channel-wide revocation: per App ID and RTC channel, a watermark before which every token issued
+ * for the channel is rejected. Ending a meeting or banning a channel revokes all its tokens with
+ * one entry, however many were issued.
+ * <p>
+ * Entries are keyed by a 64-bit hash of the App ID and the channel name bytes, so the verifier
+ * looks a channel up straight from the decoded token without building the channel name. Two
+ * channels whose hashes collide share a watermark, which is vanishingly unlikely. The table is an
+ * open-addressing hash table of primitive arrays: lookups take no lock and allocate nothing,
+ * changes are serialized and copy the table only when it grows or entries are purged.
+ * <p>
+ * Install the watermarks with {@link AccessToken2Verifier#setChannelWatermarks(ChannelWatermarks)}.
+ */
+public final class ChannelWatermarks {
+    private volatile Table table;
+    private volatile long version;
+
+    /**
+     * @param expectedChannels The number of channels expected to have a watermark at once; the
+     *                         table grows beyond it as needed.
+     */
+    public ChannelWatermarks(int expectedChannels) {
+        if (expectedChannels <= 0) {
+            throw new IllegalArgumentException("expectedChannels must be positive");
+        }
+        this.table = new Table(capacityFor(expectedChannels));
+    }
+
+    /**
+     * Rejects every token of a channel issued before a time. A watermark never moves back: a
+     * lower value than the current one is ignored.
+     *
+     * @param appId The App ID.
+     * @param channelName The channel name.
+     * @param watermark Tokens issued before this time, in seconds since 1/1/1970, are rejected.
+     */
+    public synchronized void revokeChannel(String appId, String channelName, int watermark) {
+        byte[] channel = channelName.getBytes();
+        long key = key(appId, channel, 0, channel.length);
+        Table current = table;
+        int slot = current.find(key);
+        if (slot >= 0) {
+            if (watermark > current.watermarks.get(slot)) {
+                current.watermarks.set(slot, watermark);
+                version = AccessToken2Verifier.nextVersion();
+            }
+            return;
+        }
+        if ((current.size + 1) * 2 > current.capacity()) {
+            current = current.copy(current.capacity() * 2, Integer.MIN_VALUE);
+            table = current;
+        }
+        current.insert(key, watermark);
+        version = AccessToken2Verifier.nextVersion();
+    }
+
+    /**
+     * @param appId The App ID.
+     * @param channelName The channel name.
+     * @return The watermark of the channel, or 0 if its tokens are not revoked.
+     */
+    public int getWatermark(String appId, String channelName) {
+        byte[] channel = channelName.getBytes();
+        return getWatermark(appId, channel, 0, channel.length);
+    }
+
+    /**
+     * Looks up the watermark of a channel from the packed channel name.
+     *
+     * @param appId The App ID.
+     * @param data Holds the channel name bytes.
+     * @param offset Where the channel name starts.
+     * @param length The length of the channel name in bytes.
+     * @return The watermark of the channel, or 0 if its tokens are not revoked.
+     */
+    int getWatermark(String appId, byte[] data, int offset, int length) {
+        Table current = table;
+        int slot = current.find(key(appId, data, offset, length));
+        return slot < 0 ? 0 : current.watermarks.get(slot);
+    }
+
+    /**
+     * Removes the watermark of a channel, so its tokens are accepted again.
+     *
+     * @param appId The App ID.
+     * @param channelName The channel name.
+     */
+    public synchronized void remove(String appId, String channelName) {
+        byte[] channel = channelName.getBytes();
+        Table current = table;
+        int slot = current.find(key(appId, channel, 0, channel.length));
+        if (slot >= 0) {
+            current.watermarks.set(slot, 0);
+            table = current.copy(current.capacity(), 1);
+        }
+    }
+
+    /**
+     * Removes the watermarks set before a time. Once every token issued before a watermark has
+     * expired, the watermark has nothing left to reject.
+     *
+     * @param timestamp Watermarks earlier than this time, in seconds since 1/1/1970, are removed.
+     */
+    public synchronized void purgeBefore(int timestamp) {
+        Table current = table;
+        table = current.copy(current.capacity(), timestamp);
+    }
+
+    /**
+     * @return The version of the last raised watermark, see {@link AccessToken2Verifier#cacheGeneration()}.
+     */
+    long version() {
+        return version;
+    }
+
+    /**
+     * @return The number of channels with a watermark.
+     */
+    public int size() {
+        return table.size;
+    }
+
+    private static long key(String appId, byte[] data, int offset, int length) {
+        // 64-bit FNV-1a over the channel name bytes, keyed by the App ID.
+        long h = 0xcbf29ce484222325L ^ appId.hashCode();
+        for (int i = offset; i < offset + length; i++) {
+            h ^= data[i] & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h = Utils.mix64(h);
+        return h == 0 ? 1 : h;
+    }
+
+    private static int capacityFor(int entries) {
+        int capacity = 16;
+        while (capacity < entries * 2 && capacity < 1 << 30) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Linear-probing table. A key of 0 marks a free slot; a slot's watermark is written before its
+     * key, so a reader that finds the key also sees the watermark.
+     */
+    private static final class Table {
+        final AtomicLongArray keys;
+        final AtomicIntegerArray watermarks;
+        volatile int size;
+
+        Table(int capacity) {
+            keys = new AtomicLongArray(capacity);
+            watermarks = new AtomicIntegerArray(capacity);
+        }
+
+        int capacity() {
+            return keys.length();
+        }
+
+        int find(long key) {
+            int mask = capacity() - 1;
+            for (int slot = (int) key & mask; ; slot = (slot + 1) & mask) {
+                long k = keys.get(slot);
+                if (k == key) {
+                    return slot;
+                }
+                if (k == 0) {
+                    return -1;
+                }
+            }
+        }
+
+        void insert(long key, int watermark) {
+            int mask = capacity() - 1;
+            int slot = (int) key & mask;
+            while (keys.get(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            watermarks.set(slot, watermark);
+            keys.set(slot, key);
+            size++;
+        }
+
+        /**
+         * @return A table of the given capacity with the entries whose watermark is at least {@code minimum}.
+         */
+        Table copy(int capacity, int minimum) {
+            Table copy = new Table(Math.max(capacity, capacityFor(size)));
+            for (int slot = 0; slot < capacity(); slot++) {
+                long key = keys.get(slot);
+                if (key != 0 && watermarks.get(slot) >= minimum) {
+                    copy.insert(key, watermarks.get(slot));
+                }
+            }
+            return copy;
+        }
+    }
+}
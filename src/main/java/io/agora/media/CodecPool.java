@@ -0,0 +1,114 @@
+package io.agora.media;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of {@link AccessToken2Codec} instances shared by the threads of a process.
+ * <p>
+ * {@link AccessToken2Codec#forCurrentThread()} keeps one codec per thread, which suits a fixed
+ * pool of worker threads but not one virtual thread per request. A pool hands out an idle codec,
+ * creating one when none is idle, and keeps at most a configurable number of idle codecs when
+ * they are returned. The most recently returned codec is handed out first. Codecs the pool does
+ * not keep have their native zlib memory freed right away. Instances are thread-safe.
+ */
+public final class CodecPool {
+    private final ConcurrentLinkedDeque<AccessToken2Codec> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private volatile int maximumIdle;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder released = new LongAdder();
+
+    /**
+     * @param maximumIdle The maximum number of idle codecs kept.
+     */
+    public CodecPool(int maximumIdle) {
+        setMaximumIdle(maximumIdle);
+    }
+
+    /**
+     * @return A pool keeping up to two idle codecs per processor.
+     */
+    public static CodecPool createDefault() {
+        return new CodecPool(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * Takes a codec from the pool, creating one if none is idle. Return it with {@link #release}.
+     *
+     * @return The codec, for the exclusive use of the caller until released.
+     */
+    public AccessToken2Codec acquire() {
+        acquired.increment();
+        AccessToken2Codec codec = idle.pollFirst();
+        if (codec != null) {
+            idleCount.decrementAndGet();
+            return codec;
+        }
+        created.increment();
+        return new AccessToken2Codec();
+    }
+
+    /**
+     * Returns a codec to the pool. It is dropped if the pool already keeps enough idle codecs.
+     *
+     * @param codec A codec obtained from {@link #acquire()}.
+     */
+    public void release(AccessToken2Codec codec) {
+        released.increment();
+        if (idleCount.incrementAndGet() <= maximumIdle) {
+            idle.offerFirst(codec);
+        } else {
+            idleCount.decrementAndGet();
+            codec.end();
+        }
+    }
+
+    /**
+     * Changes how many idle codecs are kept, dropping the surplus.
+     *
+     * @param maximumIdle The maximum number of idle codecs kept.
+     */
+    public void setMaximumIdle(int maximumIdle) {
+        if (maximumIdle < 0) {
+            throw new IllegalArgumentException("maximumIdle must not be negative");
+        }
+        this.maximumIdle = maximumIdle;
+        while (idleCount.get() > maximumIdle) {
+            AccessToken2Codec codec = idle.pollLast();
+            if (codec == null) {
+                break;
+            }
+            idleCount.decrementAndGet();
+            codec.end();
+        }
+    }
+
+    public int getMaximumIdle() {
+        return maximumIdle;
+    }
+
+    /**
+     * @return The number of idle codecs in the pool.
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * @return The number of codecs acquired and not released yet.
+     */
+    public long getInUseCount() {
+        return acquired.sum() - released.sum();
+    }
+
+    /**
+     * @return The number of codecs the pool had to create.
+     */
+    public long getCreatedCount() {
+        return created.sum();
+    }
+}
@@ -18,10 +18,18 @@ public class DynamicKey {
      * @throws Exception
      */
     public static String generate(String appID, String appCertificate, String channelName, int unixTs, int randomInt) throws Exception {
-        String unixTsStr = ("0000000000" + Integer.toString(unixTs)).substring(Integer.toString(unixTs).length());
-        String randomIntStr = ("00000000" + Integer.toHexString(randomInt)).substring(Integer.toHexString(randomInt).length());
-        String signature = generateSignature(appID, appCertificate, channelName, unixTsStr, randomIntStr);
-        return String.format("%s%s%s%s", signature, appID, unixTsStr, randomIntStr);
+        Object event = TokenEvents.beginBuild();
+        try {
+            String unixTsStr = ("0000000000" + Integer.toString(unixTs)).substring(Integer.toString(unixTs).length());
+            String randomIntStr = ("00000000" + Integer.toHexString(randomInt)).substring(Integer.toHexString(randomInt).length());
+            String signature = generateSignature(appID, appCertificate, channelName, unixTsStr, randomIntStr);
+            String key = String.format("%s%s%s%s", signature, appID, unixTsStr, randomIntStr);
+            TokenEvents.built(event, "", "", 0, key);
+            return key;
+        } catch (Exception e) {
+            TokenEvents.failed(event, "", TokenMetrics.FailureReason.ERROR);
+            throw e;
+        }
     }
 
     private static String generateSignature(String appID, String appCertificate, String channelName, String unixTsStr, String randomIntStr) throws Exception {
@@ -17,13 +17,21 @@ public class DynamicKey3 {
      */
     public static String generate(String appID, String appCertificate, String channelName, int unixTs, int randomInt, long uid, int expiredTs) throws Exception {
         String version = "003";
-        String unixTsStr = ("0000000000" + Integer.toString(unixTs)).substring(Integer.toString(unixTs).length());
-        String randomIntStr = ("00000000" + Integer.toHexString(randomInt)).substring(Integer.toHexString(randomInt).length());
-        uid = uid & 0xFFFFFFFFL;
-        String uidStr = ("0000000000" + Long.toString(uid)).substring(Long.toString(uid).length());
-        String expiredTsStr = ("0000000000" + Integer.toString(expiredTs)).substring(Integer.toString(expiredTs).length());
-        String signature = generateSignature3(appID, appCertificate, channelName, unixTsStr, randomIntStr, uidStr, expiredTsStr);
-        return String.format("%s%s%s%s%s%s%s", version, signature, appID, unixTsStr, randomIntStr, uidStr, expiredTsStr);
+        Object event = TokenEvents.beginBuild();
+        try {
+            String unixTsStr = ("0000000000" + Integer.toString(unixTs)).substring(Integer.toString(unixTs).length());
+            String randomIntStr = ("00000000" + Integer.toHexString(randomInt)).substring(Integer.toHexString(randomInt).length());
+            uid = uid & 0xFFFFFFFFL;
+            String uidStr = ("0000000000" + Long.toString(uid)).substring(Long.toString(uid).length());
+            String expiredTsStr = ("0000000000" + Integer.toString(expiredTs)).substring(Integer.toString(expiredTs).length());
+            String signature = generateSignature3(appID, appCertificate, channelName, unixTsStr, randomIntStr, uidStr, expiredTsStr);
+            String key = String.format("%s%s%s%s%s%s%s", version, signature, appID, unixTsStr, randomIntStr, uidStr, expiredTsStr);
+            TokenEvents.built(event, version, "", 0, key);
+            return key;
+        } catch (Exception e) {
+            TokenEvents.failed(event, version, TokenMetrics.FailureReason.ERROR);
+            throw e;
+        }
     }
 
     private static String generateSignature3(String appID, String appCertificate, String channelName, String unixTsStr, String randomIntStr, String uidStr, String expiredTsStr) throws Exception {
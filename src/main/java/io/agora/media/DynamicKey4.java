@@ -58,13 +58,21 @@ public class DynamicKey4 {
 
     private static String doGenerate(String appID, String appCertificate, String channelName, int unixTs, int randomInt, long uid, int expiredTs, String serviceType) throws Exception {
         String version = "004";
-        String unixTsStr = ("0000000000" + Integer.toString(unixTs)).substring(Integer.toString(unixTs).length());
-        String randomIntStr = ("00000000" + Integer.toHexString(randomInt)).substring(Integer.toHexString(randomInt).length());
-        uid = uid & 0xFFFFFFFFL;
-        String uidStr = ("0000000000" + Long.toString(uid)).substring(Long.toString(uid).length());
-        String expiredTsStr = ("0000000000" + Integer.toString(expiredTs)).substring(Integer.toString(expiredTs).length());
-        String signature = generateSignature4(appID, appCertificate, channelName, unixTsStr, randomIntStr, uidStr, expiredTsStr, serviceType);
-        return String.format("%s%s%s%s%s%s", version, signature, appID, unixTsStr, randomIntStr, expiredTsStr);
+        Object event = TokenEvents.beginBuild();
+        try {
+            String unixTsStr = ("0000000000" + Integer.toString(unixTs)).substring(Integer.toString(unixTs).length());
+            String randomIntStr = ("00000000" + Integer.toHexString(randomInt)).substring(Integer.toHexString(randomInt).length());
+            uid = uid & 0xFFFFFFFFL;
+            String uidStr = ("0000000000" + Long.toString(uid)).substring(Long.toString(uid).length());
+            String expiredTsStr = ("0000000000" + Integer.toString(expiredTs)).substring(Integer.toString(expiredTs).length());
+            String signature = generateSignature4(appID, appCertificate, channelName, unixTsStr, randomIntStr, uidStr, expiredTsStr, serviceType);
+            String key = String.format("%s%s%s%s%s%s", version, signature, appID, unixTsStr, randomIntStr, expiredTsStr);
+            TokenEvents.built(event, version, serviceType, 0, key);
+            return key;
+        } catch (Exception e) {
+            TokenEvents.failed(event, version, TokenMetrics.FailureReason.ERROR);
+            throw e;
+        }
     }
 
     private static String generateSignature4(String appID, String appCertificate, String channelName, String unixTsStr, String randomIntStr, String uidStr, String expiredTsStr, String serviceType) throws Exception {
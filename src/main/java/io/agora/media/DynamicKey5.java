@@ -52,12 +52,22 @@ public class DynamicKey5 {
     }
 
     public static String generateDynamicKey(String appID, String appCertificate, String channel, int ts, int salt, long uid, int expiredTs, TreeMap<Short, String> extra, short service) throws Exception {
-        String signature = generateSignature(appCertificate, service, appID, ts, salt, channel, uid, expiredTs, extra);
-        DynamicKey5Content content = new DynamicKey5Content(service, signature, new Hex().decode(appID.getBytes()), ts, salt, expiredTs, extra);
-        byte[] bytes = pack(content);
-        byte[] encoded = new Base64().encode(bytes);
-        String base64 = new String(encoded);
-        return version + base64;
+        Object event = TokenEvents.beginBuild();
+        try {
+            String signature = generateSignature(appCertificate, service, appID, ts, salt, channel, uid, expiredTs, extra);
+            DynamicKey5Content content = new DynamicKey5Content(service, signature, new Hex().decode(appID.getBytes()), ts, salt, expiredTs, extra);
+            byte[] bytes = pack(content);
+            byte[] encoded = new Base64().encode(bytes);
+            String base64 = new String(encoded);
+            String key = version + base64;
+            if (event != null) {
+                TokenEvents.built(event, version, Short.toString(service), bytes.length, key);
+            }
+            return key;
+        } catch (Exception e) {
+            TokenEvents.failed(event, version, TokenMetrics.FailureReason.ERROR);
+            throw e;
+        }
     }
 
     private static byte[] pack(Packable content) {
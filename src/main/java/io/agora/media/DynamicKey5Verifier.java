@@ -0,0 +1,165 @@
+package io.agora.media;
+
+import java.nio.BufferOverflowException;
+import java.security.MessageDigest;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Verifies version 005 dynamic keys built by {@link DynamicKey5}.
+ * <p>
+ * The key is parsed once and its signature is decoded to raw bytes. The HMAC-SHA1 over the signed
+ * message is recomputed into a per-thread buffer with a Mac keyed once per App Certificate, and
+ * compared byte by byte, so no key or hex string is regenerated. Media channel, recording, public
+ * sharing and in-channel permission keys are supported.
+ * <p>
+ * A key issued for uid 0 is valid for any uid. Instances are thread-safe.
+ */
+public class DynamicKey5Verifier {
+    private final byte[] rawAppId;
+    private final ThreadLocal<Workspace> workspace;
+
+    /**
+     * Creates a verifier for the dynamic keys of one app.
+     *
+     * @param appID The App ID of your Agora project.
+     * @param appCertificate The App Certificate of your Agora project.
+     */
+    public DynamicKey5Verifier(String appID, String appCertificate) {
+        try {
+            this.rawAppId = Hex.decodeHex(appID.toCharArray());
+            final SecretKeySpec key = new SecretKeySpec(Hex.decodeHex(appCertificate.toCharArray()), "HmacSHA1");
+            this.workspace = ThreadLocal.withInitial(() -> new Workspace(key));
+        } catch (DecoderException e) {
+            throw new IllegalArgumentException("appID and appCertificate must be hex strings", e);
+        }
+    }
+
+    /**
+     * Verifies a dynamic key for a channel and user at the current time.
+     *
+     * @param key The version 005 dynamic key.
+     * @param channelName The channel the user joins.
+     * @param uid The user ID.
+     * @return The verification result.
+     */
+    public VerifyResult verify(String key, String channelName, long uid) {
+        return verify(key, channelName, uid, Utils.getTimestamp());
+    }
+
+    /**
+     * Verifies a dynamic key for a channel and user.
+     *
+     * @param key The version 005 dynamic key.
+     * @param channelName The channel the user joins.
+     * @param uid The user ID.
+     * @param now The current time, in seconds since 1/1/1970.
+     * @return The verification result.
+     */
+    public VerifyResult verify(String key, String channelName, long uid, int now) {
+        if (key == null || key.length() <= DynamicKey5.version.length()) {
+            return VerifyResult.MALFORMED;
+        }
+        if (!key.startsWith(DynamicKey5.version)) {
+            return VerifyResult.VERSION_MISMATCH;
+        }
+
+        DynamicKey5 key5 = new DynamicKey5();
+        try {
+            if (!key5.fromString(key)) {
+                return VerifyResult.MALFORMED;
+            }
+        } catch (RuntimeException e) {
+            return VerifyResult.MALFORMED;
+        }
+        return verify(key5, channelName, uid, now);
+    }
+
+    /**
+     * Verifies an already parsed dynamic key for a channel and user.
+     *
+     * @param key The parsed version 005 dynamic key.
+     * @param channelName The channel the user joins.
+     * @param uid The user ID.
+     * @param now The current time, in seconds since 1/1/1970.
+     * @return The verification result.
+     */
+    public VerifyResult verify(DynamicKey5 key, String channelName, long uid, int now) {
+        DynamicKey5.DynamicKey5Content content = key.content;
+
+        switch (content.serviceType) {
+            case DynamicKey5.MEDIA_CHANNEL_SERVICE:
+            case DynamicKey5.RECORDING_SERVICE:
+            case DynamicKey5.PUBLIC_SHARING_SERVICE:
+                break;
+            case DynamicKey5.IN_CHANNEL_PERMISSION:
+                String permission = content.extra.get(DynamicKey5.ALLOW_UPLOAD_IN_CHANNEL);
+                if (!DynamicKey5.noUpload.equals(permission) && !DynamicKey5.audioVideoUpload.equals(permission)) {
+                    return VerifyResult.UNKNOWN_SERVICE;
+                }
+                break;
+            default:
+                return VerifyResult.UNKNOWN_SERVICE;
+        }
+
+        if (!MessageDigest.isEqual(rawAppId, content.appID)) {
+            return VerifyResult.APP_ID_MISMATCH;
+        }
+
+        byte[] signature;
+        try {
+            signature = Hex.decodeHex(content.signature.toCharArray());
+        } catch (DecoderException e) {
+            return VerifyResult.MALFORMED;
+        }
+
+        Workspace ws = workspace.get();
+        try {
+            int signedUid = (int) (uid & 0xFFFFFFFFL);
+            if (!ws.matches(signature, content, channelName, signedUid)
+                    && (signedUid == 0 || !ws.matches(signature, content, channelName, 0))) {
+                return VerifyResult.SIGNATURE_MISMATCH;
+            }
+        } catch (BufferOverflowException e) {
+            // The channel name and extra do not fit in a signed message.
+            return VerifyResult.MALFORMED;
+        }
+
+        if (content.expiredTs != 0 && content.expiredTs < now) {
+            return VerifyResult.EXPIRED;
+        }
+        return VerifyResult.OK;
+    }
+
+    private static final class Workspace {
+        private final Mac mac;
+        private final ByteBuf message = new ByteBuf();
+        private final byte[] digest;
+
+        Workspace(SecretKeySpec key) {
+            try {
+                mac = Mac.getInstance("HmacSHA1");
+                mac.init(key);
+            } catch (Exception e) {
+                throw new IllegalStateException("HmacSHA1 is not available", e);
+            }
+            digest = new byte[mac.getMacLength()];
+        }
+
+        boolean matches(byte[] signature, DynamicKey5.DynamicKey5Content content, String channelName, int uid) {
+            message.reset();
+            new DynamicKey5.Message(content.serviceType, content.appID, content.unixTs, content.salt, channelName, uid,
+                    content.expiredTs, content.extra).marshal(message);
+            mac.update(message.buffer.array(), 0, message.buffer.position());
+            try {
+                mac.doFinal(digest, 0);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return MessageDigest.isEqual(digest, signature);
+        }
+    }
+}
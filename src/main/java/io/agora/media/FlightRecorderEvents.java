@@ -0,0 +1,144 @@
+package io.agora.media;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Flight Recorder side of {@link TokenEvents}. Only {@link TokenEvents} refers to this class,
+ * and only after checking that {@code jdk.jfr} is present, so the library still runs on JVMs
+ * without Flight Recorder.
+ */
+final class FlightRecorderEvents {
+    private FlightRecorderEvents() {
+    }
+
+    @Name("io.agora.media.TokenBuild")
+    @Label("Token Build")
+    @Category({ "Agora", "Token" })
+    @Description("A token or dynamic key was built")
+    @StackTrace(false)
+    static final class TokenBuildEvent extends Event {
+        @Label("Version")
+        String version;
+
+        @Label("Service Types")
+        String serviceTypes;
+
+        @Label("Content Size")
+        @DataAmount
+        int contentSize;
+
+        @Label("Token Length")
+        int tokenLength;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    @Name("io.agora.media.TokenParse")
+    @Label("Token Parse")
+    @Category({ "Agora", "Token" })
+    @Description("A token was parsed")
+    @StackTrace(false)
+    static final class TokenParseEvent extends Event {
+        @Label("Version")
+        String version;
+
+        @Label("Service Types")
+        String serviceTypes;
+
+        @Label("Token Length")
+        int tokenLength;
+
+        @Label("Outcome")
+        String outcome;
+    }
+
+    static boolean isAvailable() {
+        return FlightRecorder.isAvailable();
+    }
+
+    static void register() {
+        FlightRecorder.register(TokenBuildEvent.class);
+        FlightRecorder.register(TokenParseEvent.class);
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recorderInitialized(FlightRecorder recorder) {
+                update(recorder);
+            }
+
+            @Override
+            public void recordingStateChanged(Recording recording) {
+                update(FlightRecorder.getFlightRecorder());
+            }
+        });
+    }
+
+    static Object beginBuild() {
+        TokenBuildEvent event = new TokenBuildEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static Object beginParse() {
+        TokenParseEvent event = new TokenParseEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void endBuild(Object started, String version, String serviceTypes, int contentSize, int tokenLength, String outcome) {
+        TokenBuildEvent event = (TokenBuildEvent) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.version = version;
+            event.serviceTypes = serviceTypes;
+            event.contentSize = contentSize;
+            event.tokenLength = tokenLength;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    static void endParse(Object started, String version, String serviceTypes, int tokenLength, String outcome) {
+        TokenParseEvent event = (TokenParseEvent) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.version = version;
+            event.serviceTypes = serviceTypes;
+            event.tokenLength = tokenLength;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    static void endFailed(Object started, String version, String outcome) {
+        if (started instanceof TokenBuildEvent) {
+            endBuild(started, version, "", 0, 0, outcome);
+        } else {
+            endParse(started, version, "", 0, outcome);
+        }
+    }
+
+    private static void update(FlightRecorder recorder) {
+        boolean running = false;
+        for (Recording recording : recorder.getRecordings()) {
+            running |= recording.getState() == RecordingState.RUNNING;
+        }
+        TokenEvents.recording = running;
+    }
+}
@@ -0,0 +1,213 @@
+package io.agora.media;
+
+import java.util.Map;
+
+/**
+ * Immutable, precompiled view of the RTC privileges carried by a token.
+ * <p>
+ * Answering "may this user publish video now" from a parsed token means walking privilege
+ * TreeMaps and comparing boxed values. A snapshot resolves everything once: each privilege becomes
+ * an absolute expiration timestamp that already accounts for the token expiration and, for publish
+ * privileges, the join privilege. Checks are then a single comparison, allocate nothing, and the
+ * snapshot can be cached per token, for example with {@link TokenCache#forPrivileges}.
+ */
+public final class PrivilegeSnapshot {
+    public static final int JOIN_CHANNEL = 1;
+    public static final int PUBLISH_AUDIO_STREAM = 1 << 1;
+    public static final int PUBLISH_VIDEO_STREAM = 1 << 2;
+    public static final int PUBLISH_DATA_STREAM = 1 << 3;
+
+    private final String channelName;
+    private final String uid;
+    private final int grantedMask;
+    private final long tokenExpireAt;
+    private final long joinExpireAt;
+    private final long audioExpireAt;
+    private final long videoExpireAt;
+    private final long dataExpireAt;
+
+    private PrivilegeSnapshot(String channelName, String uid, long tokenExpireAt, long join, long audio, long video, long data) {
+        this.channelName = channelName;
+        this.uid = uid == null ? "" : uid;
+        this.tokenExpireAt = tokenExpireAt;
+        this.joinExpireAt = Math.min(join, tokenExpireAt);
+        this.audioExpireAt = Math.min(audio, this.joinExpireAt);
+        this.videoExpireAt = Math.min(video, this.joinExpireAt);
+        this.dataExpireAt = Math.min(data, this.joinExpireAt);
+        this.grantedMask = (join > 0 ? JOIN_CHANNEL : 0) | (audio > 0 ? PUBLISH_AUDIO_STREAM : 0)
+                | (video > 0 ? PUBLISH_VIDEO_STREAM : 0) | (data > 0 ? PUBLISH_DATA_STREAM : 0);
+    }
+
+    /**
+     * Builds the snapshot of a version 007 token. Privilege values are seconds after
+     * {@code issueTs}; a value of 0 lasts as long as the token.
+     *
+     * @param token The parsed token.
+     * @return The snapshot, or null if the token carries no RTC service.
+     */
+    public static PrivilegeSnapshot of(AccessToken2 token) {
+        AccessToken2.Service service = token.services.get(AccessToken2.SERVICE_TYPE_RTC);
+        if (!(service instanceof AccessToken2.ServiceRtc)) {
+            return null;
+        }
+        AccessToken2.ServiceRtc rtc = (AccessToken2.ServiceRtc) service;
+        long issueTs = token.issueTs;
+        long tokenExpireAt = issueTs + token.expire;
+        Map<Short, Integer> privileges = rtc.getPrivileges();
+        return new PrivilegeSnapshot(rtc.getChannelName(), rtc.getUid(), tokenExpireAt,
+                relativeExpire(privileges.get(AccessToken2.PrivilegeRtc.PRIVILEGE_JOIN_CHANNEL.intValue), issueTs, tokenExpireAt),
+                relativeExpire(privileges.get(AccessToken2.PrivilegeRtc.PRIVILEGE_PUBLISH_AUDIO_STREAM.intValue), issueTs, tokenExpireAt),
+                relativeExpire(privileges.get(AccessToken2.PrivilegeRtc.PRIVILEGE_PUBLISH_VIDEO_STREAM.intValue), issueTs, tokenExpireAt),
+                relativeExpire(privileges.get(AccessToken2.PrivilegeRtc.PRIVILEGE_PUBLISH_DATA_STREAM.intValue), issueTs, tokenExpireAt));
+    }
+
+    /**
+     * Builds the snapshot of a version 006 token. Privilege values are timestamps; a value of 0
+     * lasts as long as the token.
+     *
+     * @param token The token, with its channel name and uid set.
+     * @return The snapshot.
+     */
+    public static PrivilegeSnapshot of(AccessToken token) {
+        long tokenExpireAt = token.message.ts;
+        Map<Short, Integer> privileges = token.message.messages;
+        return new PrivilegeSnapshot(token.channelName, token.uid, tokenExpireAt,
+                absoluteExpire(privileges.get(AccessToken.Privileges.kJoinChannel.intValue), tokenExpireAt),
+                absoluteExpire(privileges.get(AccessToken.Privileges.kPublishAudioStream.intValue), tokenExpireAt),
+                absoluteExpire(privileges.get(AccessToken.Privileges.kPublishVideoStream.intValue), tokenExpireAt),
+                absoluteExpire(privileges.get(AccessToken.Privileges.kPublishDataStream.intValue), tokenExpireAt));
+    }
+
+    /**
+     * Builds the snapshot of a decoded version 006 token.
+     *
+     * @param token The decoded token.
+     * @param channelName The channel the token was verified for.
+     * @param uid The uid the token was verified for.
+     * @return The snapshot.
+     */
+    public static PrivilegeSnapshot of(AccessTokenVerifier.Decoded token, String channelName, String uid) {
+        long tokenExpireAt = token.getTs();
+        return new PrivilegeSnapshot(channelName, uid, tokenExpireAt,
+                decodedExpire(token, AccessToken.Privileges.kJoinChannel, tokenExpireAt),
+                decodedExpire(token, AccessToken.Privileges.kPublishAudioStream, tokenExpireAt),
+                decodedExpire(token, AccessToken.Privileges.kPublishVideoStream, tokenExpireAt),
+                decodedExpire(token, AccessToken.Privileges.kPublishDataStream, tokenExpireAt));
+    }
+
+    private static long relativeExpire(Integer value, long issueTs, long tokenExpireAt) {
+        if (value == null) {
+            return 0;
+        }
+        return value == 0 ? tokenExpireAt : issueTs + (value & 0xFFFFFFFFL);
+    }
+
+    private static long absoluteExpire(Integer value, long tokenExpireAt) {
+        if (value == null) {
+            return 0;
+        }
+        return value == 0 ? tokenExpireAt : value & 0xFFFFFFFFL;
+    }
+
+    private static long decodedExpire(AccessTokenVerifier.Decoded token, AccessToken.Privileges privilege, long tokenExpireAt) {
+        return token.hasPrivilege(privilege) ? absoluteExpire(token.getPrivilegeExpire(privilege), tokenExpireAt) : 0;
+    }
+
+    /**
+     * @param channelName The channel name.
+     * @param uid The user ID as a string.
+     * @return Whether the token was issued for this channel and user. A token issued for uid 0 applies to every user.
+     */
+    public boolean appliesTo(String channelName, String uid) {
+        return this.channelName.equals(channelName) && (this.uid.isEmpty() || this.uid.equals(uid));
+    }
+
+    /**
+     * @param channelName The channel name.
+     * @param uid The user ID.
+     * @return Whether the token was issued for this channel and user.
+     */
+    public boolean appliesTo(String channelName, int uid) {
+        return appliesTo(channelName, AccessToken2.getUidStr(uid));
+    }
+
+    public boolean canJoinChannel(int now) {
+        return now < joinExpireAt;
+    }
+
+    public boolean canPublishAudio(int now) {
+        return now < audioExpireAt;
+    }
+
+    public boolean canPublishVideo(int now) {
+        return now < videoExpireAt;
+    }
+
+    public boolean canPublishData(int now) {
+        return now < dataExpireAt;
+    }
+
+    /**
+     * @param privileges A combination of the privilege bits of this class.
+     * @param now The current time, in seconds since 1/1/1970.
+     * @return Whether all the given privileges are valid at {@code now}.
+     */
+    public boolean allows(int privileges, int now) {
+        return (validMask(now) & privileges) == privileges;
+    }
+
+    /**
+     * @param now The current time, in seconds since 1/1/1970.
+     * @return The privilege bits valid at {@code now}.
+     */
+    public int validMask(int now) {
+        return bit(now, joinExpireAt, JOIN_CHANNEL) | bit(now, audioExpireAt, PUBLISH_AUDIO_STREAM)
+                | bit(now, videoExpireAt, PUBLISH_VIDEO_STREAM) | bit(now, dataExpireAt, PUBLISH_DATA_STREAM);
+    }
+
+    private static int bit(int now, long expireAt, int bit) {
+        // (now - expireAt) is negative exactly while the privilege is valid.
+        return (int) (((now - expireAt) >>> 63) * bit);
+    }
+
+    /**
+     * @return The privilege bits the token grants, whether expired or not.
+     */
+    public int getGrantedMask() {
+        return grantedMask;
+    }
+
+    public String getChannelName() {
+        return channelName;
+    }
+
+    public String getUid() {
+        return uid;
+    }
+
+    /**
+     * @return The token expiration timestamp, in seconds since 1/1/1970.
+     */
+    public long getTokenExpireAt() {
+        return tokenExpireAt;
+    }
+
+    /**
+     * @param privilege One privilege bit of this class.
+     * @return The effective expiration timestamp of the privilege, or 0 if it is not granted.
+     */
+    public long getExpireAt(int privilege) {
+        switch (privilege) {
+            case JOIN_CHANNEL:
+                return joinExpireAt;
+            case PUBLISH_AUDIO_STREAM:
+                return audioExpireAt;
+            case PUBLISH_VIDEO_STREAM:
+                return videoExpireAt;
+            case PUBLISH_DATA_STREAM:
+                return dataExpireAt;
+            default:
+                throw new IllegalArgumentException(String.format("unknown privilege: `%d`", privilege));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package io.agora.media;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Remembers the version 007 tokens already presented, so a one-shot token, such as one handed to
+ * a recording bot or a webhook callback, is accepted only once.
+ * <p>
+ * Tokens are identified by App ID, salt and issue timestamp, hashed to a 64-bit id, and kept
+ * until they expire, after which verification rejects them anyway. Ids are grouped into buckets
+ * by expiration time, one bucket per {@code bucketSeconds}, held in a ring that covers the window.
+ * A bucket whose tokens have all expired is dropped whole when its slot in the ring is reused, so
+ * memory is proportional to the tokens that expire within the window. Each bucket is split into
+ * lock-striped open-addressing sets of primitive longs: checks lock one stripe of one bucket,
+ * never the whole guard.
+ * <p>
+ * A token that expires later than the window could not be remembered until it expires, so the
+ * guard refuses to record it: the window must cover the lifetime of the tokens it guards, and
+ * {@link #covers(int, int)} tells whether it does. Two tokens whose ids collide are taken for one, which is vanishingly unlikely.
+ * <p>
+ * Install the guard with {@link AccessToken2Verifier#setReplayGuard(ReplayGuard)}.
+ */
+public final class ReplayGuard {
+    private static final int STRIPES = 16;
+
+    private final int windowSeconds;
+    private final int bucketSeconds;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    /**
+     * @param windowSeconds How long ahead of the current time tokens are remembered, normally the
+     *                      longest lifetime of the guarded tokens.
+     * @param bucketSeconds The span of expiration times sharing a bucket; memory is released with
+     *                      this granularity.
+     */
+    public ReplayGuard(int windowSeconds, int bucketSeconds) {
+        if (windowSeconds <= 0 || bucketSeconds <= 0) {
+            throw new IllegalArgumentException("windowSeconds and bucketSeconds must be positive");
+        }
+        this.windowSeconds = windowSeconds;
+        this.bucketSeconds = bucketSeconds;
+        this.buckets = new AtomicReferenceArray<>(windowSeconds / bucketSeconds + 2);
+    }
+
+    /**
+     * Records a token presentation.
+     *
+     * @param appId The App ID of the token.
+     * @param salt The salt of the token.
+     * @param issueTs The issue timestamp of the token.
+     * @param expireAt The expiration timestamp of the token, in seconds since 1/1/1970.
+     * @param now The current time, in seconds since 1/1/1970.
+     * @return Whether this is the first presentation of the token. Tokens that have expired are
+     * not recorded.
+     * @throws IllegalArgumentException If the token expires later than the window.
+     */
+    public boolean checkAndRecord(String appId, int salt, int issueTs, int expireAt, int now) {
+        long remaining = (long) expireAt - now;
+        if (remaining < 0) {
+            return true;
+        }
+        if (remaining > windowSeconds) {
+            throw new IllegalArgumentException("token expires " + remaining + " s from now, beyond the "
+                    + windowSeconds + " s replay window");
+        }
+        long id = Utils.tokenId(appId, salt, issueTs);
+        return bucket(expireAt / bucketSeconds).stripes[(int) (id >>> 32) & (STRIPES - 1)].add(id == 0 ? 1 : id);
+    }
+
+    /**
+     * Records a presentation of a parsed token at the current time.
+     *
+     * @param token The token.
+     * @return Whether this is the first presentation of the token.
+     * @throws IllegalArgumentException If the token expires later than the window.
+     */
+    public boolean checkAndRecord(AccessToken2 token) {
+        return checkAndRecord(token.appId, token.salt, token.issueTs,
+                (int) Math.min(Integer.MAX_VALUE, (long) token.issueTs + token.expire), Utils.getTimestamp());
+    }
+
+    /**
+     * Tells whether a token can be remembered until it expires.
+     *
+     * @param expireAt The expiration timestamp of the token, in seconds since 1/1/1970.
+     * @param now The current time, in seconds since 1/1/1970.
+     * @return Whether the token expires within the window.
+     */
+    public boolean covers(int expireAt, int now) {
+        return (long) expireAt - now <= windowSeconds;
+    }
+
+    /**
+     * @return The number of tokens remembered, including those of expired buckets not yet dropped.
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null) {
+                for (Stripe stripe : bucket.stripes) {
+                    size += stripe.size();
+                }
+            }
+        }
+        return size;
+    }
+
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    public int getBucketSeconds() {
+        return bucketSeconds;
+    }
+
+    /**
+     * Returns the bucket of an expiration epoch, dropping the expired bucket in its ring slot.
+     */
+    private Bucket bucket(int epoch) {
+        int slot = epoch % buckets.length();
+        while (true) {
+            Bucket bucket = buckets.get(slot);
+            // A later bucket means the caller's clock is behind; remembering longer is safe.
+            if (bucket != null && bucket.epoch - epoch >= 0) {
+                return bucket;
+            }
+            Bucket fresh = new Bucket(epoch);
+            if (buckets.compareAndSet(slot, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private static final class Bucket {
+        final int epoch;
+        final Stripe[] stripes = new Stripe[STRIPES];
+
+        Bucket(int epoch) {
+            this.epoch = epoch;
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe();
+            }
+        }
+    }
+
+    /**
+     * Linear-probing set of non-zero longs.
+     */
+    private static final class Stripe {
+        private long[] keys = new long[16];
+        private int size;
+
+        synchronized boolean add(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) key & mask;
+            for (long k = keys[slot]; k != 0; k = keys[slot]) {
+                if (k == key) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return true;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private void grow() {
+            long[] old = keys;
+            keys = new long[old.length * 2];
+            int mask = keys.length - 1;
+            for (long key : old) {
+                if (key != 0) {
+                    int slot = (int) key & mask;
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = key;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package io.agora.media;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version 007 tokens revoked before they expire, identified by App ID, salt and issue timestamp.
+ * <p>
+ * A blocked Bloom filter answers most checks: each token sets three bits within one 64-bit
+ * word, so a check reads a single word and, for tokens that were never revoked, stops there. A
+ * match is confirmed in an exact set, which rules out false positives. Checks take no lock;
+ * revocations, which are rare, are serialized. Entries are dropped once their token has expired,
+ * at most once a minute as tokens are revoked, by {@link #purgeExpired(int)} and by the task
+ * {@link #schedulePurge(ScheduledExecutorService, long)} starts; the filter is then rebuilt from
+ * the remaining entries. Checks never purge.
+ * <p>
+ * Install the list with {@link AccessToken2Verifier#setRevocationList(RevocationList)}.
+ */
+public final class RevocationList {
+    private static final int BITS_PER_ENTRY = 16;
+    private static final int PURGE_INTERVAL_SECONDS = 60;
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final int expectedEntries;
+    private volatile AtomicLongArray filter;
+    private volatile int nextPurgeAt;
+    private volatile long version;
+
+    /**
+     * @param expectedEntries The number of revoked tokens expected to be live at once; the filter
+     *                        grows beyond it as needed.
+     */
+    public RevocationList(int expectedEntries) {
+        if (expectedEntries <= 0) {
+            throw new IllegalArgumentException("expectedEntries must be positive");
+        }
+        this.expectedEntries = expectedEntries;
+        this.filter = new AtomicLongArray(words(expectedEntries));
+    }
+
+    /**
+     * Revokes a token until it expires.
+     *
+     * @param appId The App ID of the token.
+     * @param salt The salt of the token.
+     * @param issueTs The issue timestamp of the token.
+     * @param expireAt The expiration timestamp of the token, in seconds since 1/1/1970.
+     */
+    public synchronized void revoke(String appId, int salt, int issueTs, int expireAt) {
+        int now = Utils.getTimestamp();
+        if (now - nextPurgeAt >= 0) {
+            purgeExpired(now);
+        }
+        long id = Utils.tokenId(appId, salt, issueTs);
+        entries.put(id, new Entry(appId, salt, issueTs, expireAt));
+        if (entries.size() > filter.length() * 64 / BITS_PER_ENTRY) {
+            rebuild();
+        } else {
+            set(filter, id);
+        }
+        version = AccessToken2Verifier.nextVersion();
+    }
+
+    /**
+     * Revokes a parsed token until it expires.
+     *
+     * @param token The token.
+     */
+    public void revoke(AccessToken2 token) {
+        revoke(token.appId, token.salt, token.issueTs, (int) Math.min(Integer.MAX_VALUE, (long) token.issueTs + token.expire));
+    }
+
+    /**
+     * Checks whether a token was revoked.
+     *
+     * @param appId The App ID of the token.
+     * @param salt The salt of the token.
+     * @param issueTs The issue timestamp of the token.
+     * @return Whether the token was revoked. A revoked token that has expired may no longer be reported.
+     */
+    public boolean isRevoked(String appId, int salt, int issueTs) {
+        long id = Utils.tokenId(appId, salt, issueTs);
+        if (!mayContain(filter, id)) {
+            return false;
+        }
+        Entry entry = entries.get(id);
+        return entry != null && entry.salt == salt && entry.issueTs == issueTs && entry.appId.equals(appId);
+    }
+
+    /**
+     * Schedules {@link #purgeExpired(int)} to run periodically, for lists that are checked long
+     * after their last revocation.
+     *
+     * @param executor The executor that runs the purges.
+     * @param periodSeconds The time between purges, in seconds.
+     * @return The scheduled task; cancel it to stop purging.
+     */
+    public ScheduledFuture<?> schedulePurge(ScheduledExecutorService executor, long periodSeconds) {
+        if (periodSeconds <= 0) {
+            throw new IllegalArgumentException("periodSeconds must be positive");
+        }
+        return executor.scheduleWithFixedDelay(() -> purgeExpired(Utils.getTimestamp()),
+                periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Forgets revoked tokens that have expired, which verification rejects anyway.
+     *
+     * @param now The current time, in seconds since 1/1/1970.
+     */
+    public synchronized void purgeExpired(int now) {
+        nextPurgeAt = now + PURGE_INTERVAL_SECONDS;
+        boolean removed = false;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            if (it.next().expireAt - now < 0) {
+                it.remove();
+                removed = true;
+            }
+        }
+        if (removed) {
+            rebuild();
+        }
+    }
+
+    /**
+     * @return The version of the last revocation, see {@link AccessToken2Verifier#cacheGeneration()}.
+     */
+    long version() {
+        return version;
+    }
+
+    /**
+     * @return The number of revoked tokens that are remembered.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Replaces the filter with one holding only the current entries, sized for them.
+     */
+    private void rebuild() {
+        AtomicLongArray rebuilt = new AtomicLongArray(words(Math.max(expectedEntries, entries.size() * 2)));
+        for (Long id : entries.keySet()) {
+            set(rebuilt, id);
+        }
+        filter = rebuilt;
+    }
+
+    private static int words(int entries) {
+        long needed = ((long) entries * BITS_PER_ENTRY + 63) / 64;
+        int words = 1;
+        while (words < needed && words < 1 << 26) {
+            words <<= 1;
+        }
+        return words;
+    }
+
+    private static long mask(long id) {
+        return 1L << (id & 63) | 1L << ((id >>> 6) & 63) | 1L << ((id >>> 12) & 63);
+    }
+
+    private static int word(AtomicLongArray filter, long id) {
+        return (int) (id >>> 32) & (filter.length() - 1);
+    }
+
+    private static void set(AtomicLongArray filter, long id) {
+        int word = word(filter, id);
+        long mask = mask(id);
+        long current;
+        do {
+            current = filter.get(word);
+        } while ((current & mask) != mask && !filter.compareAndSet(word, current, current | mask));
+    }
+
+    private static boolean mayContain(AtomicLongArray filter, long id) {
+        long mask = mask(id);
+        return (filter.get(word(filter, id)) & mask) == mask;
+    }
+
+    private static final class Entry {
+        final String appId;
+        final int salt;
+        final int issueTs;
+        final int expireAt;
+
+        Entry(String appId, int salt, int issueTs, int expireAt) {
+            this.appId = appId;
+            this.salt = salt;
+            this.issueTs = issueTs;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package io.agora.media;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Credentials of one app whose App Certificate can be rotated while tokens are being issued.
+ * <p>
+ * The state is an immutable {@link Snapshot} replaced as a whole (read-copy-update), so readers
+ * never lock and never see a half-updated state. A rotation is scheduled with an activation time
+ * and a grace window: tokens are signed with the current certificate until the activation time
+ * and with the new one afterwards, and the old certificate is still reported as accepted until
+ * the grace window ends. The new credentials, with their packed App ID and keyed certificate
+ * signer, are prepared when the rotation is scheduled, before it activates.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class RotatingCredentials {
+    private final AtomicReference<Snapshot> snapshot;
+
+    /**
+     * @param credentials The initial credentials.
+     */
+    public RotatingCredentials(AppCredentials credentials) {
+        this.snapshot = new AtomicReference<>(new Snapshot(credentials, null, 0, 0, null, 0));
+    }
+
+    /**
+     * @param appId The App ID of your Agora project.
+     * @param appCertificate The initial App Certificate of your Agora project.
+     * @throws IllegalArgumentException If either value is invalid.
+     */
+    public RotatingCredentials(String appId, String appCertificate) {
+        this(new AppCredentials(appId, appCertificate));
+    }
+
+    public String getAppId() {
+        return snapshot.get().current.getAppId();
+    }
+
+    /**
+     * @return The credentials to sign new tokens with now.
+     */
+    public AppCredentials current() {
+        return snapshot(Utils.getTimestamp()).current;
+    }
+
+    /**
+     * Returns the state at a point in time, activating a scheduled rotation that is due.
+     *
+     * @param now The current time, in seconds since 1/1/1970.
+     * @return The state.
+     */
+    public Snapshot snapshot(int now) {
+        Snapshot s = snapshot.get();
+        while (s.next != null && now >= s.activateAt) {
+            Snapshot promoted = new Snapshot(s.next, null, 0, 0, s.current, s.activateAt + s.graceSeconds);
+            if (snapshot.compareAndSet(s, promoted)) {
+                return promoted;
+            }
+            s = snapshot.get();
+        }
+        return s;
+    }
+
+    /**
+     * Schedules a new App Certificate. A rotation scheduled earlier and not yet active is replaced.
+     *
+     * @param appCertificate The new App Certificate.
+     * @param activateAt When to start signing with it, in seconds since 1/1/1970.
+     * @param graceSeconds How long the current certificate is still accepted after activation.
+     * @return The validated new credentials.
+     * @throws IllegalArgumentException If the certificate is invalid.
+     */
+    public AppCredentials scheduleRotation(String appCertificate, int activateAt, int graceSeconds) {
+        if (graceSeconds < 0) {
+            throw new IllegalArgumentException("graceSeconds must not be negative");
+        }
+        AppCredentials next = new AppCredentials(getAppId(), appCertificate);
+
+        while (true) {
+            Snapshot s = snapshot(Utils.getTimestamp());
+            Snapshot updated = new Snapshot(s.current, next, activateAt, graceSeconds, s.previous, s.previousUntil);
+            if (snapshot.compareAndSet(s, updated)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Switches to a new App Certificate now.
+     *
+     * @param appCertificate The new App Certificate.
+     * @param graceSeconds How long the current certificate is still accepted.
+     * @return The validated new credentials.
+     * @throws IllegalArgumentException If the certificate is invalid.
+     */
+    public AppCredentials rotate(String appCertificate, int graceSeconds) {
+        int now = Utils.getTimestamp();
+        AppCredentials next = scheduleRotation(appCertificate, now, graceSeconds);
+        snapshot(now);
+        return next;
+    }
+
+    /**
+     * Cancels a rotation that has not activated yet.
+     *
+     * @return Whether a rotation was pending.
+     */
+    public boolean cancelRotation() {
+        while (true) {
+            Snapshot s = snapshot(Utils.getTimestamp());
+            if (s.next == null) {
+                return false;
+            }
+            if (snapshot.compareAndSet(s, new Snapshot(s.current, null, 0, 0, s.previous, s.previousUntil))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * An immutable state of the rotation.
+     */
+    public static final class Snapshot {
+        private final AppCredentials current;
+        private final AppCredentials next;
+        private final int activateAt;
+        private final int graceSeconds;
+        private final AppCredentials previous;
+        private final int previousUntil;
+
+        Snapshot(AppCredentials current, AppCredentials next, int activateAt, int graceSeconds, AppCredentials previous, int previousUntil) {
+            this.current = current;
+            this.next = next;
+            this.activateAt = activateAt;
+            this.graceSeconds = graceSeconds;
+            this.previous = previous;
+            this.previousUntil = previousUntil;
+        }
+
+        /**
+         * @return The credentials new tokens are signed with.
+         */
+        public AppCredentials getCurrent() {
+            return current;
+        }
+
+        /**
+         * @return The credentials scheduled to become current, or null.
+         */
+        public AppCredentials getNext() {
+            return next;
+        }
+
+        /**
+         * @return When the scheduled credentials become current, in seconds since 1/1/1970.
+         */
+        public int getActivateAt() {
+            return activateAt;
+        }
+
+        /**
+         * Returns the credentials replaced by the last rotation while their grace window lasts.
+         *
+         * @param now The current time, in seconds since 1/1/1970.
+         * @return The previous credentials, or null if there are none or their grace window ended.
+         */
+        public AppCredentials getPrevious(int now) {
+            return previous != null && now < previousUntil ? previous : null;
+        }
+
+        /**
+         * @return When the previous credentials stop being accepted, in seconds since 1/1/1970.
+         */
+        public int getPreviousUntil() {
+            return previousUntil;
+        }
+    }
+}
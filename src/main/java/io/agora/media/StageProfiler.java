@@ -0,0 +1,117 @@
+package io.agora.media;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sampling profiler for the stages of {@link AccessToken2#build()} and {@link AccessToken2#parse(String)}.
+ * <p>
+ * While enabled, one call in every N is timed stage by stage and each stage's duration is
+ * recorded in a {@link Histogram}, in nanoseconds. While disabled, building and parsing only read
+ * one volatile field. The profiler can be switched on and off at any time; calls already running
+ * finish with the setting they started with.
+ */
+public final class StageProfiler {
+    /**
+     * A stage of building or parsing a version 007 token.
+     */
+    public enum Stage {
+        /** Packing the App ID, timestamps, salt and services into a {@link ByteBuf}. */
+        PACK,
+        /** Deriving the signing key from the App Certificate, issue timestamp and salt, as {@link AccessToken2#getSign()} does. */
+        SIGNING_KEY,
+        /** Signing the packed content with HMAC-SHA256. */
+        SIGNATURE,
+        /** Compressing the signature and content. */
+        COMPRESS,
+        /** Encoding the compressed token in Base64. */
+        BASE64_ENCODE,
+        /** Decoding a token from Base64. */
+        BASE64_DECODE,
+        /** Decompressing a decoded token. */
+        DECOMPRESS,
+        /** Reading the signature, App ID, timestamps, salt and services. */
+        UNPACK
+    }
+
+    private static final Histogram[] HISTOGRAMS = new Histogram[Stage.values().length];
+    private static volatile int sampleEvery;
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new Histogram();
+        }
+    }
+
+    private StageProfiler() {
+    }
+
+    /**
+     * Starts profiling.
+     *
+     * @param sampleEvery Profile one call in this many; 1 profiles every call.
+     */
+    public static void enable(int sampleEvery) {
+        if (sampleEvery <= 0) {
+            throw new IllegalArgumentException("sampleEvery must be positive");
+        }
+        StageProfiler.sampleEvery = sampleEvery;
+    }
+
+    /**
+     * Stops profiling. Recorded histograms are kept until {@link #reset()}.
+     */
+    public static void disable() {
+        sampleEvery = 0;
+    }
+
+    public static boolean isEnabled() {
+        return sampleEvery > 0;
+    }
+
+    /**
+     * @return One call in this many is profiled, or 0 if profiling is disabled.
+     */
+    public static int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    /**
+     * @param stage The stage.
+     * @return The durations of the stage in sampled calls, in nanoseconds.
+     */
+    public static Histogram getHistogram(Stage stage) {
+        return HISTOGRAMS[stage.ordinal()];
+    }
+
+    /**
+     * Clears the histograms of every stage.
+     */
+    public static void reset() {
+        for (Histogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Decides whether the call about to start is profiled.
+     *
+     * @return Whether to time the stages of this call.
+     */
+    static boolean sample() {
+        int every = sampleEvery;
+        return every > 0 && (every == 1 || ThreadLocalRandom.current().nextInt(every) == 0);
+    }
+
+    /**
+     * Records a stage that started at {@code since} and ended now.
+     *
+     * @param stage The stage that ended.
+     * @param since When the stage started, from {@link System#nanoTime()}.
+     * @return Now, when the next stage starts.
+     */
+    static long lap(Stage stage, long since) {
+        long now = System.nanoTime();
+        HISTOGRAMS[stage.ordinal()].record(now - since);
+        return now;
+    }
+}
@@ -0,0 +1,353 @@
+package io.agora.media;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, concurrent cache of parsed tokens keyed by the token string.
+ * <p>
+ * Clients present the same token on every request until it expires, so decoding, inflating and
+ * signing it again each time is wasted work. The cache sits in front of a {@link Loader} (for
+ * example a verifier) and keeps the loaded result until the token expires or the entry is pushed
+ * out by newer ones. A cache hit is only as trustworthy as its loader: a cache in front of
+ * {@link AccessToken2#parse(String)}, such as {@link #forUnverifiedAccessToken2(int)}, does not
+ * authenticate anything. The caches of verified tokens load a token again after a token or
+ * channel is revoked on their verifier, so a revoked token is not served from the cache, and
+ * cache nothing while their verifier has a {@link ReplayGuard}, which must see every presentation.
+ * <p>
+ * Entries are spread over independently locked segments, each an access-ordered LRU map, so
+ * lookups of different tokens rarely contend. Expired entries are dropped lazily when they are
+ * looked up and in bulk by {@link #cleanUp()}. Cached values, including the decoded tokens of
+ * {@link #forUnverifiedAccessToken2(int)}, are shared between callers and must be treated as
+ * read-only.
+ *
+ * @param <V> The type of the parse result.
+ */
+public class TokenCache<V> {
+    /**
+     * Loads the value for a token that is not cached yet.
+     */
+    public interface Loader<V> {
+        /**
+         * @param token The token string.
+         * @return The parse result, or null if the token is invalid. Null results are not cached.
+         */
+        V load(String token) throws Exception;
+    }
+
+    /**
+     * Tells when a loaded value stops being valid.
+     */
+    public interface Expiry<V> {
+        /**
+         * @param value A value returned by the loader.
+         * @return The expiration timestamp, in seconds since 1/1/1970.
+         */
+        long expireAt(V value);
+    }
+
+    /**
+     * A generation under which loaded values must not be cached.
+     */
+    static final long UNCACHEABLE = -1;
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment<V>[] segments;
+    private final Loader<V> loader;
+    private final Expiry<V> expiry;
+    private final LongSupplier generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * Creates a token cache.
+     *
+     * @param maximumSize The maximum number of cached tokens.
+     * @param loader Loads the value of a token on a cache miss.
+     * @param expiry Tells when a loaded value expires.
+     */
+    public TokenCache(int maximumSize, Loader<V> loader, Expiry<V> expiry) {
+        this(maximumSize, loader, expiry, null);
+    }
+
+    /**
+     * @param generation Tells the state values are loaded under; a value loaded under an earlier
+     *                   state is loaded again, and values loaded under {@link #UNCACHEABLE} are
+     *                   not cached. Null if values never go stale before they expire.
+     */
+    @SuppressWarnings("unchecked")
+    private TokenCache(int maximumSize, Loader<V> loader, Expiry<V> expiry, LongSupplier generation) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.loader = loader;
+        this.expiry = expiry;
+        this.generation = generation;
+        this.segments = new Segment[SEGMENT_COUNT];
+        int perSegment = Math.max(1, (maximumSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment<>(perSegment, evictions);
+        }
+    }
+
+    /**
+     * Creates a cache of decoded version 007 tokens, expiring each one at {@code issueTs + expire}.
+     * Tokens are only decoded, as by {@link AccessToken2#parse(String)}: neither the App ID nor the
+     * signature is checked, so a hit does not mean the token is authentic. Use
+     * {@link #forVerifier(AccessToken2Verifier, int)} to cache verified tokens. The decoded token
+     * is shared by every caller that presents the same token string, so callers must not modify it.
+     *
+     * @param maximumSize The maximum number of cached tokens.
+     * @return The cache.
+     */
+    public static TokenCache<AccessToken2> forUnverifiedAccessToken2(int maximumSize) {
+        return new TokenCache<>(maximumSize, token -> {
+            AccessToken2 accessToken = new AccessToken2();
+            return accessToken.parse(token) ? accessToken : null;
+        }, accessToken -> (long) accessToken.issueTs + accessToken.expire, null);
+    }
+
+    /**
+     * Creates a cache of verified version 007 tokens. Only tokens that pass verification are
+     * cached; {@link #get(String)} returns null for the others. Cached tokens are verified again
+     * once a token or channel has been revoked on the verifier. While the verifier has a replay
+     * guard, every lookup is verified and nothing is cached.
+     *
+     * @param verifier The verifier that checks tokens on a cache miss.
+     * @param maximumSize The maximum number of cached tokens.
+     * @return The cache.
+     */
+    public static TokenCache<AccessToken2Verifier.Verification> forVerifier(AccessToken2Verifier verifier, int maximumSize) {
+        return new TokenCache<>(maximumSize, token -> {
+            AccessToken2Verifier.Verification verification = verifier.verify(token);
+            return verification.isValid() ? verification : null;
+        }, AccessToken2Verifier.Verification::getExpireAt, verifier::cacheGeneration);
+    }
+
+    /**
+     * Creates a cache of privilege snapshots of verified version 007 tokens. Tokens that fail
+     * verification or carry no RTC service are not cached; {@link #get(String)} returns null for them.
+     * Cached tokens are verified again once a token or channel has been revoked on the verifier.
+     * While the verifier has a replay guard, every lookup is verified and nothing is cached.
+     *
+     * @param verifier The verifier that checks tokens on a cache miss.
+     * @param maximumSize The maximum number of cached tokens.
+     * @return The cache.
+     */
+    public static TokenCache<PrivilegeSnapshot> forPrivileges(AccessToken2Verifier verifier, int maximumSize) {
+        return new TokenCache<>(maximumSize, token -> {
+            AccessToken2Verifier.Verification verification = verifier.verify(token);
+            return verification.isValid() ? PrivilegeSnapshot.of(verification.getToken()) : null;
+        }, PrivilegeSnapshot::getTokenExpireAt, verifier::cacheGeneration);
+    }
+
+    /**
+     * Returns the cached value of a token, loading it on a miss.
+     *
+     * @param token The token string.
+     * @return The value, or null if the loader rejected the token.
+     */
+    public V get(String token) {
+        Segment<V> segment = segmentFor(token);
+        long now = currentTime();
+        // Read before loading, so a revocation during the load makes the new entry stale.
+        long loadedUnder = currentGeneration();
+
+        Entry<V> entry;
+        synchronized (segment) {
+            entry = segment.get(token);
+            if (entry != null && entry.expireAt <= now) {
+                segment.remove(token);
+                entry = null;
+                expirations.increment();
+            } else if (entry != null && entry.generation != loadedUnder) {
+                segment.remove(token);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            hits.increment();
+            return entry.value;
+        }
+
+        misses.increment();
+        V value;
+        try {
+            value = loader.load(token);
+        } catch (Exception e) {
+            value = null;
+        }
+        if (value == null) {
+            loadFailures.increment();
+            return null;
+        }
+
+        long expireAt = expiry.expireAt(value);
+        if (expireAt > now && loadedUnder != UNCACHEABLE) {
+            synchronized (segment) {
+                segment.put(token, new Entry<>(value, expireAt, loadedUnder));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the cached value of a token without loading it.
+     *
+     * @param token The token string.
+     * @return The value, or null if the token is not cached or has expired.
+     */
+    public V getIfPresent(String token) {
+        Segment<V> segment = segmentFor(token);
+        synchronized (segment) {
+            Entry<V> entry = segment.get(token);
+            if (entry != null && entry.expireAt > currentTime() && entry.generation == currentGeneration()) {
+                return entry.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes a token from the cache.
+     *
+     * @param token The token string.
+     */
+    public void invalidate(String token) {
+        Segment<V> segment = segmentFor(token);
+        synchronized (segment) {
+            segment.remove(token);
+        }
+    }
+
+    /**
+     * Removes all tokens from the cache.
+     */
+    public void invalidateAll() {
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Removes all expired tokens from the cache.
+     */
+    public void cleanUp() {
+        long now = currentTime();
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                Iterator<Entry<V>> it = segment.values().iterator();
+                while (it.hasNext()) {
+                    if (it.next().expireAt <= now) {
+                        it.remove();
+                        expirations.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of cached tokens, including expired ones not cleaned up yet.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return A snapshot of the hit and miss statistics.
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), loadFailures.sum(), evictions.sum(), expirations.sum());
+    }
+
+    private long currentGeneration() {
+        return generation == null ? 0 : generation.getAsLong();
+    }
+
+    private Segment<V> segmentFor(String token) {
+        int h = token.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENT_COUNT - 1)];
+    }
+
+    private static long currentTime() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expireAt;
+        final long generation;
+
+        Entry(V value, long expireAt, long generation) {
+            this.value = value;
+            this.expireAt = expireAt;
+            this.generation = generation;
+        }
+    }
+
+    private static final class Segment<V> extends LinkedHashMap<String, Entry<V>> {
+        private final int capacity;
+        private final LongAdder evictions;
+
+        Segment(int capacity, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Immutable snapshot of cache statistics.
+     */
+    public static class Stats {
+        public final long hitCount;
+        public final long missCount;
+        public final long loadFailureCount;
+        public final long evictionCount;
+        public final long expirationCount;
+
+        public Stats(long hitCount, long missCount, long loadFailureCount, long evictionCount, long expirationCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.loadFailureCount = loadFailureCount;
+            this.evictionCount = evictionCount;
+            this.expirationCount = expirationCount;
+        }
+
+        public long requestCount() {
+            return hitCount + missCount;
+        }
+
+        public double hitRate() {
+            long requests = requestCount();
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+    }
+}
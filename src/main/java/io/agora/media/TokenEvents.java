@@ -0,0 +1,114 @@
+package io.agora.media;
+
+import java.util.Collection;
+
+/**
+ * Emits JDK Flight Recorder events for token builds and parses.
+ * <p>
+ * The events are {@code io.agora.media.TokenBuild} and {@code io.agora.media.TokenParse}, in the
+ * "Agora / Token" category, and are enabled and thresholded through the usual JFR settings. While
+ * no recording is running, {@link #beginBuild()} and {@link #beginParse()} only read one volatile
+ * field and return null. On a JVM without Flight Recorder they always return null and the event
+ * classes are never loaded.
+ */
+final class TokenEvents {
+    private static final boolean AVAILABLE = isFlightRecorderPresent();
+
+    /**
+     * Whether a recording is running, kept up to date by {@link FlightRecorderEvents}.
+     */
+    static volatile boolean recording;
+
+    static {
+        if (AVAILABLE) {
+            FlightRecorderEvents.register();
+        }
+    }
+
+    private TokenEvents() {
+    }
+
+    /**
+     * Starts timing a build.
+     *
+     * @return The event to pass to {@link #built} or {@link #failed}, or null if nothing is recorded.
+     */
+    static Object beginBuild() {
+        return recording ? FlightRecorderEvents.beginBuild() : null;
+    }
+
+    /**
+     * Starts timing a parse.
+     *
+     * @return The event to pass to {@link #parsed} or {@link #failed}, or null if nothing is recorded.
+     */
+    static Object beginParse() {
+        return recording ? FlightRecorderEvents.beginParse() : null;
+    }
+
+    /**
+     * Commits a successful build.
+     *
+     * @param event The event from {@link #beginBuild()}, or null.
+     * @param version The token version, or an empty string for the unversioned dynamic key.
+     * @param serviceTypes The services in the token.
+     * @param contentSize The size of the signed content before compression and encoding, or 0 if not known.
+     * @param token The token.
+     */
+    static void built(Object event, String version, String serviceTypes, int contentSize, String token) {
+        if (event != null) {
+            FlightRecorderEvents.endBuild(event, version, serviceTypes, contentSize, token.length(), "OK");
+        }
+    }
+
+    /**
+     * Commits a successful parse.
+     *
+     * @param event The event from {@link #beginParse()}, or null.
+     * @param version The token version.
+     * @param serviceTypes The services in the token.
+     * @param token The token.
+     */
+    static void parsed(Object event, String version, String serviceTypes, String token) {
+        if (event != null) {
+            FlightRecorderEvents.endParse(event, version, serviceTypes, token.length(), "OK");
+        }
+    }
+
+    /**
+     * Commits a failed build or parse.
+     *
+     * @param event The event from {@link #beginBuild()} or {@link #beginParse()}, or null.
+     * @param version The token version.
+     * @param reason Why it failed.
+     */
+    static void failed(Object event, String version, TokenMetrics.FailureReason reason) {
+        if (event != null) {
+            FlightRecorderEvents.endFailed(event, version, reason.name());
+        }
+    }
+
+    /**
+     * @param serviceTypes The service types of a version 007 token.
+     * @return The service types separated by commas, such as "1,2".
+     */
+    static String serviceTypes(Collection<Short> serviceTypes) {
+        StringBuilder sb = new StringBuilder();
+        for (Short serviceType : serviceTypes) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(serviceType);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isFlightRecorderPresent() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder", false, TokenEvents.class.getClassLoader());
+            return FlightRecorderEvents.isAvailable();
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package io.agora.media;
+
+import java.util.TreeMap;
+import java.util.function.IntSupplier;
+import java.util.zip.Deflater;
+
+/**
+ * Single entry point for building every kind of token of one app.
+ * <p>
+ * The builders ({@link RtcTokenBuilder2}, {@code RtmTokenBuilder2}, {@code ChatTokenBuilder2},
+ * {@code ApaasTokenBuilder}, {@code EducationTokenBuilder2}, {@link FpaTokenBuilder} and the
+ * legacy {@link RtcTokenBuilder} and {@code RtmTokenBuilder}) take the credentials on every call,
+ * validate them again and draw a salt from a new {@code SecureRandom} per token. A factory is
+ * configured once with the credentials, a clock, a salt source, a {@link CodecPool} and a
+ * compression level, and builds tokens with the same content as the builders through the shared
+ * {@link AccessToken2Codec} pipeline. Education tokens are the same as aPaaS tokens.
+ * <p>
+ * Every method returns an empty string if the token cannot be built, as the builders do.
+ * Instances are thread-safe; the configuration can be changed while tokens are built.
+ */
+public final class TokenFactory {
+    private final RotatingCredentials credentials;
+    private volatile IntSupplier clock = Utils::getTimestamp;
+    private volatile IntSupplier saltSource;
+    private volatile CodecPool codecPool = CodecPool.createDefault();
+    private volatile int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private volatile UsageCounters usageCounters;
+
+    /**
+     * @param appId The App ID of your Agora project.
+     * @param appCertificate The App Certificate of your Agora project.
+     * @throws IllegalArgumentException If either value is invalid.
+     */
+    public TokenFactory(String appId, String appCertificate) {
+        this(new AppCredentials(appId, appCertificate));
+    }
+
+    /**
+     * @param credentials The credentials of the app.
+     */
+    public TokenFactory(AppCredentials credentials) {
+        this(new RotatingCredentials(credentials));
+    }
+
+    /**
+     * @param credentials The credentials of the app, through which its App Certificate is rotated.
+     */
+    public TokenFactory(RotatingCredentials credentials) {
+        this.credentials = credentials;
+    }
+
+    public RotatingCredentials getCredentials() {
+        return credentials;
+    }
+
+    /**
+     * Sets the clock issue timestamps are read from.
+     *
+     * @param clock Returns the current time in seconds since 1/1/1970, or null for the system clock.
+     */
+    public void setClock(IntSupplier clock) {
+        this.clock = clock == null ? Utils::getTimestamp : clock;
+    }
+
+    /**
+     * Sets where token salts come from.
+     *
+     * @param saltSource Returns a salt per token, or null for the secure random generator of each codec (the default).
+     */
+    public void setSaltSource(IntSupplier saltSource) {
+        this.saltSource = saltSource;
+    }
+
+    /**
+     * @param codecPool The pool codecs are taken from, or null for a new default pool.
+     */
+    public void setCodecPool(CodecPool codecPool) {
+        this.codecPool = codecPool == null ? CodecPool.createDefault() : codecPool;
+    }
+
+    public CodecPool getCodecPool() {
+        return codecPool;
+    }
+
+    /**
+     * Sets the deflate level of version 007 tokens. Only the default level gives tokens
+     * byte-identical to those of the builders; every level decodes the same way.
+     *
+     * @param compressionLevel A {@link Deflater} level from 0 to 9, or -1 for the default.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("invalid compression level: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Counts the tokens built per App ID, channel and service type. A token with several services
+     * counts once for each.
+     *
+     * @param usageCounters The counters, or null to count nothing (the default).
+     */
+    public void setUsageCounters(UsageCounters usageCounters) {
+        this.usageCounters = usageCounters;
+    }
+
+    public UsageCounters getUsageCounters() {
+        return usageCounters;
+    }
+
+    /**
+     * Builds an RTC token, as {@link RtcTokenBuilder2#buildTokenWithUid(String, String, String, int, RtcTokenBuilder2.Role, int, int)} does.
+     *
+     * @param channelName The channel name.
+     * @param uid The user ID, 0 for any user.
+     * @param role The user role.
+     * @param tokenExpire The token expiration time, in seconds since now.
+     * @param privilegeExpire The privilege expiration time, in seconds since now.
+     * @return The RTC token.
+     */
+    public String buildRtcToken(String channelName, int uid, RtcTokenBuilder2.Role role, int tokenExpire, int privilegeExpire) {
+        return buildRtcToken(channelName, AccessToken2.getUidStr(uid), role, tokenExpire, privilegeExpire);
+    }
+
+    /**
+     * Builds an RTC token for a user account, as {@link RtcTokenBuilder2#buildTokenWithUserAccount(String, String, String, String, RtcTokenBuilder2.Role, int, int)} does.
+     *
+     * @param channelName The channel name.
+     * @param account The user account.
+     * @param role The user role.
+     * @param tokenExpire The token expiration time, in seconds since now.
+     * @param privilegeExpire The privilege expiration time, in seconds since now.
+     * @return The RTC token.
+     */
+    public String buildRtcToken(String channelName, String account, RtcTokenBuilder2.Role role, int tokenExpire, int privilegeExpire) {
+        return build(tokenExpire, rtcService(channelName, account, role, privilegeExpire));
+    }
+
+    /**
+     * Builds an RTC token with a separate expiration per privilege.
+     *
+     * @param channelName The channel name.
+     * @param account The user account, or the UID string.
+     * @param tokenExpire The token expiration time, in seconds since now.
+     * @param joinChannelPrivilegeExpire The join channel privilege expiration, in seconds since now.
+     * @param pubAudioPrivilegeExpire The publish audio privilege expiration, in seconds since now.
+     * @param pubVideoPrivilegeExpire The publish video privilege expiration, in seconds since now.
+     * @param pubDataStreamPrivilegeExpire The publish data stream privilege expiration, in seconds since now.
+     * @return The RTC token.
+     */
+    public String buildRtcToken(String channelName, String account, int tokenExpire, int joinChannelPrivilegeExpire,
+            int pubAudioPrivilegeExpire, int pubVideoPrivilegeExpire, int pubDataStreamPrivilegeExpire) {
+        AccessToken2.Service serviceRtc = new AccessToken2.ServiceRtc(channelName, account);
+        serviceRtc.addPrivilegeRtc(AccessToken2.PrivilegeRtc.PRIVILEGE_JOIN_CHANNEL, joinChannelPrivilegeExpire);
+        serviceRtc.addPrivilegeRtc(AccessToken2.PrivilegeRtc.PRIVILEGE_PUBLISH_AUDIO_STREAM, pubAudioPrivilegeExpire);
+        serviceRtc.addPrivilegeRtc(AccessToken2.PrivilegeRtc.PRIVILEGE_PUBLISH_VIDEO_STREAM, pubVideoPrivilegeExpire);
+        serviceRtc.addPrivilegeRtc(AccessToken2.PrivilegeRtc.PRIVILEGE_PUBLISH_DATA_STREAM, pubDataStreamPrivilegeExpire);
+        return build(tokenExpire, serviceRtc);
+    }
+
+    /**
+     * Builds a token for both RTC and RTM, as {@link RtcTokenBuilder2#buildTokenWithRtm} does.
+     *
+     * @param channelName The channel name.
+     * @param account The user account, also the RTM user ID.
+     * @param role The RTC user role.
+     * @param tokenExpire The token expiration time, in seconds since now.
+     * @param privilegeExpire The RTC privilege expiration time, in seconds since now.
+     * @return The token.
+     */
+    public String buildRtcRtmToken(String channelName, String account, RtcTokenBuilder2.Role role, int tokenExpire, int privilegeExpire) {
+        return build(tokenExpire, rtcService(channelName, account, role, privilegeExpire), rtmService(account, tokenExpire));
+    }
+
+    /**
+     * Builds an RTM token, as {@code RtmTokenBuilder2.buildToken} does.
+     *
+     * @param userId The RTM user ID.
+     * @param expire The token expiration time, in seconds since now.
+     * @return The RTM token.
+     */
+    public String buildRtmToken(String userId, int expire) {
+        return build(expire, rtmService(userId, expire));
+    }
+
+    /**
+     * Builds a chat user token, as {@code ChatTokenBuilder2.buildUserToken} does.
+     *
+     * @param userId The chat user ID.
+     * @param expire The token expiration time, in seconds since now.
+     * @return The chat token.
+     */
+    public String buildChatUserToken(String userId, int expire) {
+        AccessToken2.Service serviceChat = new AccessToken2.ServiceChat(userId);
+        serviceChat.addPrivilegeChat(AccessToken2.PrivilegeChat.PRIVILEGE_CHAT_USER, expire);
+        return build(expire, serviceChat);
+    }
+
+    /**
+     * Builds a chat app token, as {@code ChatTokenBuilder2.buildAppToken} does.
+     *
+     * @param expire The token expiration time, in seconds since now.
+     * @return The chat token.
+     */
+    public String buildChatAppToken(int expire) {
+        AccessToken2.Service serviceChat = new AccessToken2.ServiceChat();
+        serviceChat.addPrivilegeChat(AccessToken2.PrivilegeChat.PRIVILEGE_CHAT_APP, expire);
+        return build(expire, serviceChat);
+    }
+
+    /**
+     * Builds an aPaaS room user token, as {@code ApaasTokenBuilder.buildRoomUserToken} and
+     * {@code EducationTokenBuilder2.buildRoomUserToken} do, with the same services.
+     *
+     * @param roomUuid The room UUID.
+     * @param userUuid The user UUID.
+     * @param role The user role in the room.
+     * @param expire The token expiration time, in seconds since now.
+     * @return The aPaaS token.
+     */
+    public String buildApaasRoomUserToken(String roomUuid, String userUuid, Short role, int expire) {
+        AccessToken2.Service serviceApaas = new AccessToken2.ServiceApaas(roomUuid, userUuid, role);
+        serviceApaas.addPrivilegeApaas(AccessToken2.PrivilegeApaas.PRIVILEGE_ROOM_USER, expire);
+
+        AccessToken2.Service serviceRtm = rtmService(userUuid, expire);
+        serviceRtm.addPrivilegeChat(AccessToken2.PrivilegeChat.PRIVILEGE_CHAT_USER, expire);
+
+        AccessToken2.Service serviceChat = new AccessToken2.ServiceChat(Utils.md5(userUuid));
+        return build(expire, serviceApaas, serviceRtm, serviceChat);
+    }
+
+    /**
+     * Builds an aPaaS user token, as {@code ApaasTokenBuilder.buildUserToken} does.
+     *
+     * @param userUuid The user UUID.
+     * @param expire The token expiration time, in seconds since now.
+     * @return The aPaaS token.
+     */
+    public String buildApaasUserToken(String userUuid, int expire) {
+        AccessToken2.Service service = new AccessToken2.ServiceApaas(userUuid);
+        service.addPrivilegeApaas(AccessToken2.PrivilegeApaas.PRIVILEGE_USER, expire);
+        return build(expire, service);
+    }
+
+    /**
+     * Builds an aPaaS app token, as {@code ApaasTokenBuilder.buildAppToken} does.
+     *
+     * @param expire The token expiration time, in seconds since now.
+     * @return The aPaaS token.
+     */
+    public String buildApaasAppToken(int expire) {
+        AccessToken2.Service service = new AccessToken2.ServiceApaas();
+        service.addPrivilegeApaas(AccessToken2.PrivilegeApaas.PRIVILEGE_APP, expire);
+        return build(expire, service);
+    }
+
+    /**
+     * Builds an FPA token, valid for 24 hours, as {@link FpaTokenBuilder#buildToken} does.
+     *
+     * @return The FPA token.
+     */
+    public String buildFpaToken() {
+        AccessToken2.Service serviceFpa = new AccessToken2.ServiceFpa();
+        serviceFpa.addPrivilegeFpa(AccessToken2.PrivilegeFpa.PRIVILEGE_LOGIN, 0);
+        return build(24 * 3600, serviceFpa);
+    }
+
+    /**
+     * Builds a version 007 token carrying the given services.
+     *
+     * @param expire The token expiration time, in seconds since now.
+     * @param services The services, with their privileges.
+     * @return The token.
+     */
+    public String build(int expire, AccessToken2.Service... services) {
+        AppCredentials current = credentials.current();
+        AccessToken2 accessToken = new AccessToken2();
+        accessToken.appId = current.getAppId();
+        accessToken.appCert = current.getAppCertificate();
+        accessToken.expire = expire;
+        accessToken.issueTs = clock.getAsInt();
+        for (AccessToken2.Service service : services) {
+            accessToken.addService(service);
+        }
+
+        CodecPool pool = codecPool;
+        AccessToken2Codec codec = pool.acquire();
+        // The pool may be shared with other issuers, so the codec goes back with its own level.
+        int pooledLevel = codec.getCompressionLevel();
+        try {
+            accessToken.salt = nextSalt(codec);
+            codec.setCompressionLevel(compressionLevel);
+            String token = codec.encode(accessToken, current);
+            UsageCounters usage = usageCounters;
+            if (usage != null) {
+                for (AccessToken2.Service service : services) {
+                    usage.record(current.getAppId(), channelOf(service), service.getServiceType(), 1);
+                }
+            }
+            return token;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return "";
+        } finally {
+            codec.setCompressionLevel(pooledLevel);
+            pool.release(codec);
+        }
+    }
+
+    /**
+     * Builds a legacy version 006 RTC token, as {@link RtcTokenBuilder#buildTokenWithUserAccount} does.
+     *
+     * @param channelName The channel name.
+     * @param account The user account, or the UID string ("" for UID 0).
+     * @param role The user role.
+     * @param privilegeTs The privilege expiration timestamp, in seconds since 1/1/1970.
+     * @return The RTC token.
+     */
+    public String buildLegacyRtcToken(String channelName, String account, RtcTokenBuilder.Role role, int privilegeTs) {
+        TreeMap<Short, Integer> privileges = new TreeMap<>();
+        privileges.put(AccessToken.Privileges.kJoinChannel.intValue, privilegeTs);
+        if (role == RtcTokenBuilder.Role.Role_Publisher || role == RtcTokenBuilder.Role.Role_Subscriber || role == RtcTokenBuilder.Role.Role_Admin) {
+            privileges.put(AccessToken.Privileges.kPublishAudioStream.intValue, privilegeTs);
+            privileges.put(AccessToken.Privileges.kPublishVideoStream.intValue, privilegeTs);
+            privileges.put(AccessToken.Privileges.kPublishDataStream.intValue, privilegeTs);
+        }
+        return buildLegacy(channelName, account, privileges);
+    }
+
+    /**
+     * Builds a legacy version 006 RTM token, as {@code RtmTokenBuilder.buildToken} does.
+     *
+     * @param userId The RTM user ID.
+     * @param privilegeTs The login privilege expiration timestamp, in seconds since 1/1/1970.
+     * @return The RTM token.
+     */
+    public String buildLegacyRtmToken(String userId, int privilegeTs) {
+        TreeMap<Short, Integer> privileges = new TreeMap<>();
+        privileges.put(AccessToken.Privileges.kRtmLogin.intValue, privilegeTs);
+        return buildLegacy(userId, "", privileges);
+    }
+
+    private String buildLegacy(String channelName, String uid, TreeMap<Short, Integer> privileges) {
+        AppCredentials current = credentials.current();
+        CodecPool pool = codecPool;
+        AccessToken2Codec codec = pool.acquire();
+        try {
+            byte[] message = new ByteBuf().put(nextSalt(codec)).put(clock.getAsInt() + 24 * 3600).putIntMap(privileges).asBytes();
+            byte[] appIdBytes = current.getAppId().getBytes();
+            byte[] channelBytes = channelName.getBytes();
+            byte[] uidBytes = uid.getBytes();
+
+            byte[] signed = new byte[appIdBytes.length + channelBytes.length + uidBytes.length + message.length];
+            System.arraycopy(appIdBytes, 0, signed, 0, appIdBytes.length);
+            System.arraycopy(channelBytes, 0, signed, appIdBytes.length, channelBytes.length);
+            System.arraycopy(uidBytes, 0, signed, appIdBytes.length + channelBytes.length, uidBytes.length);
+            System.arraycopy(message, 0, signed, signed.length - message.length, message.length);
+            byte[] signature = codec.hmacWithCertificate(current, signed, 0, signed.length);
+
+            byte[] content = new ByteBuf().put(signature).put(Utils.crc32(channelBytes)).put(Utils.crc32(uidBytes)).put(message).asBytes();
+            String token = AccessToken.getVersion() + current.getAppId() + Utils.base64Encode(content);
+            UsageCounters usage = usageCounters;
+            if (usage != null) {
+                if (privileges.containsKey(AccessToken.Privileges.kRtmLogin.intValue)) {
+                    usage.record(current.getAppId(), "", AccessToken2.SERVICE_TYPE_RTM, 1);
+                } else {
+                    usage.record(current.getAppId(), channelName, AccessToken2.SERVICE_TYPE_RTC, 1);
+                }
+            }
+            return token;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return "";
+        } finally {
+            pool.release(codec);
+        }
+    }
+
+    private static String channelOf(AccessToken2.Service service) {
+        if (service instanceof AccessToken2.ServiceRtc) {
+            return ((AccessToken2.ServiceRtc) service).channelName;
+        }
+        if (service instanceof AccessToken2.ServiceApaas && ((AccessToken2.ServiceApaas) service).roomUuid != null) {
+            return ((AccessToken2.ServiceApaas) service).roomUuid;
+        }
+        return "";
+    }
+
+    private int nextSalt(AccessToken2Codec codec) {
+        IntSupplier source = saltSource;
+        return source == null ? codec.nextSalt() : source.getAsInt();
+    }
+
+    private static AccessToken2.Service rtcService(String channelName, String account, RtcTokenBuilder2.Role role, int privilegeExpire) {
+        AccessToken2.Service serviceRtc = new AccessToken2.ServiceRtc(channelName, account);
+        serviceRtc.addPrivilegeRtc(AccessToken2.PrivilegeRtc.PRIVILEGE_JOIN_CHANNEL, privilegeExpire);
+        if (role == RtcTokenBuilder2.Role.ROLE_PUBLISHER) {
+            serviceRtc.addPrivilegeRtc(AccessToken2.PrivilegeRtc.PRIVILEGE_PUBLISH_AUDIO_STREAM, privilegeExpire);
+            serviceRtc.addPrivilegeRtc(AccessToken2.PrivilegeRtc.PRIVILEGE_PUBLISH_VIDEO_STREAM, privilegeExpire);
+            serviceRtc.addPrivilegeRtc(AccessToken2.PrivilegeRtc.PRIVILEGE_PUBLISH_DATA_STREAM, privilegeExpire);
+        }
+        return serviceRtc;
+    }
+
+    private static AccessToken2.Service rtmService(String userId, int expire) {
+        AccessToken2.Service serviceRtm = new AccessToken2.ServiceRtm(userId);
+        serviceRtm.addPrivilegeRtm(AccessToken2.PrivilegeRtm.PRIVILEGE_LOGIN, expire);
+        return serviceRtm;
+    }
+}
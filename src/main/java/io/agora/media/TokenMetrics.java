@@ -0,0 +1,100 @@
+package io.agora.media;
+
+/**
+ * Listener for token pipeline metrics.
+ * <p>
+ * {@link AccessToken2#build()}, {@link AccessToken#build()}, {@link AccessToken2#parse(String)},
+ * the {@link AccessToken2Codec} encoders behind them and the token service report to the listener
+ * installed with {@link #install(TokenMetrics)}. Nothing is measured while none is installed.
+ * Every method has an empty default, so an adapter to a metrics library only overrides what it
+ * needs. Methods are called on the issuing thread and must be fast and thread-safe;
+ * {@link TokenMetricsRecorder} is a lock-free implementation.
+ */
+public interface TokenMetrics {
+    /**
+     * The service type reported for a token that carries more than one service.
+     */
+    short MULTIPLE_SERVICES = -1;
+
+    /**
+     * What a failure happened in.
+     */
+    enum Operation {
+        BUILD, PARSE
+    }
+
+    /**
+     * Why an operation failed.
+     */
+    enum FailureReason {
+        INVALID_CREDENTIALS, MALFORMED, VERSION_MISMATCH, UNKNOWN_SERVICE, RATE_LIMITED, OVERLOADED, ERROR
+    }
+
+    /**
+     * Called after a token is built.
+     *
+     * @param version The token version, such as "007".
+     * @param serviceType The service type of the token, such as {@link AccessToken2#SERVICE_TYPE_RTC},
+     *                    or {@link #MULTIPLE_SERVICES} if it carries several services.
+     * @param nanos How long the build took.
+     * @param uncompressedBytes The size of the signed content before compression.
+     * @param compressedBytes The size of the signed content after compression, before Base64.
+     * @param tokenLength The length of the token string.
+     */
+    default void tokenBuilt(String version, short serviceType, long nanos, int uncompressedBytes, int compressedBytes, int tokenLength) {
+    }
+
+    /**
+     * Called after a token is parsed.
+     *
+     * @param version The token version.
+     * @param nanos How long parsing took.
+     */
+    default void tokenParsed(String version, long nanos) {
+    }
+
+    /**
+     * Called when building or parsing a token fails or is refused.
+     *
+     * @param version The token version.
+     * @param operation The failed operation.
+     * @param reason Why it failed.
+     */
+    default void operationFailed(String version, Operation operation, FailureReason reason) {
+    }
+
+    /**
+     * Called on every lookup in a token cache.
+     *
+     * @param cacheName The name of the cache.
+     * @param hit Whether the lookup found a token.
+     */
+    default void cacheAccessed(String cacheName, boolean hit) {
+    }
+
+    /**
+     * Installs the process-wide listener.
+     *
+     * @param listener The listener, or null to stop measuring.
+     */
+    static void install(TokenMetrics listener) {
+        Holder.listener = listener;
+    }
+
+    /**
+     * @return The installed listener, or null if none is installed.
+     */
+    static TokenMetrics installed() {
+        return Holder.listener;
+    }
+
+    /**
+     * Holds the installed listener; interfaces cannot have mutable static fields.
+     */
+    final class Holder {
+        static volatile TokenMetrics listener;
+
+        private Holder() {
+        }
+    }
+}
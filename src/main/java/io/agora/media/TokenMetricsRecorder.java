@@ -0,0 +1,176 @@
+package io.agora.media;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default {@link TokenMetrics} implementation that keeps everything in memory.
+ * <p>
+ * It records build latency and token length histograms per token version and service type, with
+ * tokens that carry several services, such as RTC and RTM together, in a histogram of their own, parse
+ * latency per version, the overall compression ratio, failure counts per operation and reason,
+ * and hits and misses per cache. Recording only increments counters: histograms and counters are
+ * allocated up front, per service type and version, so the hot path takes no lock.
+ */
+public class TokenMetricsRecorder implements TokenMetrics {
+    private static final String[] VERSIONS = { "005", "006", "007" };
+    private static final int SERVICE_TYPES = 8;
+
+    private static final int MULTIPLE_SLOT = SERVICE_TYPES;
+
+    private final Histogram[][] buildLatency = new Histogram[VERSIONS.length][SERVICE_TYPES + 1];
+    private final Histogram[][] tokenLength = new Histogram[VERSIONS.length][SERVICE_TYPES + 1];
+    private final Histogram[] parseLatency = new Histogram[VERSIONS.length];
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder[][] failures = new LongAdder[Operation.values().length][FailureReason.values().length];
+    private final ConcurrentHashMap<String, LongAdder[]> caches = new ConcurrentHashMap<>();
+
+    public TokenMetricsRecorder() {
+        for (int v = 0; v < VERSIONS.length; v++) {
+            parseLatency[v] = new Histogram();
+            for (int t = 0; t <= SERVICE_TYPES; t++) {
+                buildLatency[v][t] = new Histogram();
+                tokenLength[v][t] = new Histogram();
+            }
+        }
+        for (LongAdder[] row : failures) {
+            for (int r = 0; r < row.length; r++) {
+                row[r] = new LongAdder();
+            }
+        }
+    }
+
+    @Override
+    public void tokenBuilt(String version, short serviceType, long nanos, int uncompressed, int compressed, int length) {
+        int v = versionIndex(version);
+        int t = serviceIndex(serviceType);
+        buildLatency[v][t].record(nanos);
+        tokenLength[v][t].record(length);
+        uncompressedBytes.add(uncompressed);
+        compressedBytes.add(compressed);
+    }
+
+    @Override
+    public void tokenParsed(String version, long nanos) {
+        parseLatency[versionIndex(version)].record(nanos);
+    }
+
+    @Override
+    public void operationFailed(String version, Operation operation, FailureReason reason) {
+        failures[operation.ordinal()][reason.ordinal()].increment();
+    }
+
+    @Override
+    public void cacheAccessed(String cacheName, boolean hit) {
+        LongAdder[] counters = caches.get(cacheName);
+        if (counters == null) {
+            counters = caches.computeIfAbsent(cacheName, name -> new LongAdder[] { new LongAdder(), new LongAdder() });
+        }
+        counters[hit ? 0 : 1].increment();
+    }
+
+    /**
+     * @param version The token version, "005", "006" or "007".
+     * @param serviceType The service type, such as {@link AccessToken2#SERVICE_TYPE_RTC}, or
+     *                    {@link TokenMetrics#MULTIPLE_SERVICES}.
+     * @return The build latency histogram, in nanoseconds.
+     */
+    public Histogram getBuildLatency(String version, short serviceType) {
+        return buildLatency[versionIndex(version)][serviceIndex(serviceType)];
+    }
+
+    /**
+     * @param version The token version, "005", "006" or "007".
+     * @param serviceType The service type, such as {@link AccessToken2#SERVICE_TYPE_RTC}, or
+     *                    {@link TokenMetrics#MULTIPLE_SERVICES}.
+     * @return The token length histogram, in characters.
+     */
+    public Histogram getTokenLength(String version, short serviceType) {
+        return tokenLength[versionIndex(version)][serviceIndex(serviceType)];
+    }
+
+    /**
+     * @param version The token version, "005", "006" or "007".
+     * @return The parse latency histogram, in nanoseconds.
+     */
+    public Histogram getParseLatency(String version) {
+        return parseLatency[versionIndex(version)];
+    }
+
+    /**
+     * @return The number of tokens built, over all versions and service types.
+     */
+    public long getBuildCount() {
+        long total = 0;
+        for (Histogram[] row : buildLatency) {
+            for (Histogram histogram : row) {
+                total += histogram.getCount();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return Compressed bytes divided by uncompressed bytes over all built tokens, or 1 if none were built.
+     */
+    public double getCompressionRatio() {
+        long uncompressed = uncompressedBytes.sum();
+        return uncompressed == 0 ? 1.0 : (double) compressedBytes.sum() / uncompressed;
+    }
+
+    public long getFailureCount(Operation operation, FailureReason reason) {
+        return failures[operation.ordinal()][reason.ordinal()].sum();
+    }
+
+    /**
+     * @param cacheName The name of the cache.
+     * @return The fraction of lookups in the cache that were hits, or 0 if there were none.
+     */
+    public double getCacheHitRate(String cacheName) {
+        LongAdder[] counters = caches.get(cacheName);
+        if (counters == null) {
+            return 0.0;
+        }
+        long hits = counters[0].sum();
+        long total = hits + counters[1].sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void reset() {
+        for (int v = 0; v < VERSIONS.length; v++) {
+            parseLatency[v].reset();
+            for (int t = 0; t <= SERVICE_TYPES; t++) {
+                buildLatency[v][t].reset();
+                tokenLength[v][t].reset();
+            }
+        }
+        uncompressedBytes.reset();
+        compressedBytes.reset();
+        for (LongAdder[] row : failures) {
+            for (LongAdder counter : row) {
+                counter.reset();
+            }
+        }
+        caches.clear();
+    }
+
+    /**
+     * Version 007 service types are 1 to 7; anything else is a token with several services.
+     */
+    private static int serviceIndex(short serviceType) {
+        return serviceType >= 0 && serviceType < SERVICE_TYPES ? serviceType : MULTIPLE_SLOT;
+    }
+
+    private static int versionIndex(String version) {
+        for (int i = VERSIONS.length - 1; i >= 0; i--) {
+            if (VERSIONS[i].equals(version)) {
+                return i;
+            }
+        }
+        return VERSIONS.length - 1;
+    }
+}
@@ -0,0 +1,306 @@
+package io.agora.media;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts issued tokens per App ID, channel and service type, for billing reconciliation and
+ * capacity planning.
+ * <p>
+ * Each key has its own {@link LongAdder}, so issuing threads never contend on a lock. Cardinality
+ * is bounded: at most twice the configured top-K keys are counted individually in a period (plus
+ * the K keys carried over from the previous one), and tokens for further keys are counted in an
+ * "other" row per service type. {@link #snapshotAndReset()} reports the K busiest keys of the
+ * period, folds the rest into "other", and starts the next period with fresh adders for the K
+ * busiest keys only, which makes room for the keys that are busy in the next period.
+ * <p>
+ * Adders are never reset, because {@link LongAdder#sumThenReset()} loses increments made while it
+ * runs. A thread may still add to an adder of a period that has ended, so the adders of ended
+ * periods are read again at every snapshot during a grace period of a second, and whatever was
+ * added after they were reported goes to that snapshot's "other" rows rather than being dropped.
+ * <p>
+ * A token with several services counts once for each of its service types. Install the counters
+ * with {@link TokenFactory#setUsageCounters(UsageCounters)} or on the token service.
+ */
+public final class UsageCounters {
+    /**
+     * App ID and channel name of the rows counting untracked keys.
+     */
+    public static final String OTHER = "other";
+
+    private static final int SERVICE_TYPES = 8;
+    private static final long GRACE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int topK;
+    private volatile Period current = new Period();
+    private final ArrayDeque<Period> ended = new ArrayDeque<>();
+    private volatile long periodStart = System.currentTimeMillis();
+
+    /**
+     * @param topK The number of busiest keys reported per period.
+     */
+    public UsageCounters(int topK) {
+        if (topK <= 0) {
+            throw new IllegalArgumentException("topK must be positive");
+        }
+        this.topK = topK;
+    }
+
+    /**
+     * Counts issued tokens.
+     *
+     * @param appId The App ID.
+     * @param channelName The channel name, or an empty string for tokens without a channel.
+     * @param serviceType The service type, such as {@link AccessToken2#SERVICE_TYPE_RTC}.
+     * @param count The number of tokens.
+     * @throws IllegalArgumentException If the service type is not a version 007 service type.
+     */
+    public void record(String appId, String channelName, short serviceType, long count) {
+        if (serviceType < 0 || serviceType >= SERVICE_TYPES) {
+            // Each service type has its own "other" row; masking would merge distinct services.
+            throw new IllegalArgumentException("unknown service type " + serviceType);
+        }
+        Period period = current;
+        Key key = new Key(appId, channelName, serviceType);
+        LongAdder counter = period.counters.get(key);
+        if (counter == null) {
+            if (period.counters.size() >= topK * 2) {
+                period.other[serviceType].add(count);
+                return;
+            }
+            counter = period.counters.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.add(count);
+    }
+
+    /**
+     * Reports the counts since the previous snapshot and starts a new period.
+     *
+     * @return The busiest keys of the period, busiest first, then an "other" row per service type
+     * with untracked or less busy keys and tokens counted late for earlier periods.
+     */
+    public synchronized Snapshot snapshotAndReset() {
+        Period ending = current;
+        List<Usage> rows = ending.rows();
+        rows.sort((a, b) -> Long.compare(b.count, a.count));
+
+        // The next period keeps counting the busiest keys individually.
+        Period next = new Period();
+        for (int i = 0; i < rows.size() && i < topK; i++) {
+            Usage row = rows.get(i);
+            next.counters.put(new Key(row.appId, row.channelName, row.serviceType), new LongAdder());
+        }
+        current = next;
+        long start = periodStart;
+        long end = System.currentTimeMillis();
+        periodStart = end;
+
+        long[] otherCounts = new long[SERVICE_TYPES];
+        // Threads may have counted on the adders of ended periods after they were reported.
+        long now = System.nanoTime();
+        for (Iterator<Period> it = ended.iterator(); it.hasNext(); ) {
+            Period period = it.next();
+            long[] totals = period.totals();
+            for (int i = 0; i < SERVICE_TYPES; i++) {
+                otherCounts[i] += totals[i] - period.reported[i];
+                period.reported[i] = totals[i];
+            }
+            if (now - period.endedAt > GRACE_NANOS) {
+                it.remove();
+            }
+        }
+
+        rows = ending.rows();
+        rows.sort((a, b) -> Long.compare(b.count, a.count));
+        List<Usage> usage = new ArrayList<>(Math.min(rows.size(), topK) + SERVICE_TYPES);
+        for (int i = 0; i < rows.size(); i++) {
+            Usage row = rows.get(i);
+            int type = row.serviceType;
+            ending.reported[type] += row.count;
+            if (i < topK && row.count > 0) {
+                usage.add(row);
+            } else {
+                otherCounts[type] += row.count;
+            }
+        }
+        for (int i = 0; i < SERVICE_TYPES; i++) {
+            long count = ending.other[i].sum();
+            ending.reported[i] += count;
+            otherCounts[i] += count;
+        }
+        ending.endedAt = now;
+        ended.add(ending);
+
+        for (short type = 0; type < SERVICE_TYPES; type++) {
+            if (otherCounts[type] > 0) {
+                usage.add(new Usage(OTHER, OTHER, type, otherCounts[type]));
+            }
+        }
+        return new Snapshot(start, end, Collections.unmodifiableList(usage));
+    }
+
+    /**
+     * @return The number of keys tracked individually.
+     */
+    public int getTrackedKeyCount() {
+        return current.counters.size();
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    /**
+     * The number of tokens issued for an App ID, channel and service type during a period.
+     */
+    public static final class Usage {
+        private final String appId;
+        private final String channelName;
+        private final short serviceType;
+        private final long count;
+
+        public Usage(String appId, String channelName, short serviceType, long count) {
+            this.appId = appId;
+            this.channelName = channelName;
+            this.serviceType = serviceType;
+            this.count = count;
+        }
+
+        public String getAppId() {
+            return appId;
+        }
+
+        public String getChannelName() {
+            return channelName;
+        }
+
+        public short getServiceType() {
+            return serviceType;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return "Usage{appId=" + appId + ", channel=" + channelName + ", serviceType=" + serviceType + ", count=" + count + "}";
+        }
+    }
+
+    /**
+     * The usage counted during a period.
+     */
+    public static final class Snapshot {
+        private final long startMillis;
+        private final long endMillis;
+        private final List<Usage> usage;
+
+        Snapshot(long startMillis, long endMillis, List<Usage> usage) {
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.usage = usage;
+        }
+
+        /**
+         * @return The start of the period, in milliseconds since 1/1/1970.
+         */
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        /**
+         * @return The end of the period, in milliseconds since 1/1/1970.
+         */
+        public long getEndMillis() {
+            return endMillis;
+        }
+
+        public List<Usage> getUsage() {
+            return usage;
+        }
+
+        /**
+         * @return The number of tokens issued during the period.
+         */
+        public long getTotal() {
+            long total = 0;
+            for (Usage row : usage) {
+                total += row.count;
+            }
+            return total;
+        }
+    }
+
+    private static final class Key {
+        final String appId;
+        final String channelName;
+        final short serviceType;
+        final int hash;
+
+        Key(String appId, String channelName, short serviceType) {
+            this.appId = appId;
+            this.channelName = channelName;
+            this.serviceType = serviceType;
+            this.hash = (31 * appId.hashCode() + channelName.hashCode()) * 31 + serviceType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && serviceType == other.serviceType
+                    && appId.equals(other.appId) && channelName.equals(other.channelName);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Period {
+        final ConcurrentHashMap<Key, LongAdder> counters = new ConcurrentHashMap<>();
+        final LongAdder[] other = new LongAdder[SERVICE_TYPES];
+        final long[] reported = new long[SERVICE_TYPES];
+        long endedAt;
+
+        Period() {
+            for (int i = 0; i < SERVICE_TYPES; i++) {
+                other[i] = new LongAdder();
+            }
+        }
+
+        List<Usage> rows() {
+            List<Usage> rows = new ArrayList<>(counters.size());
+            for (Map.Entry<Key, LongAdder> entry : counters.entrySet()) {
+                Key key = entry.getKey();
+                rows.add(new Usage(key.appId, key.channelName, key.serviceType, entry.getValue().sum()));
+            }
+            return rows;
+        }
+
+        long[] totals() {
+            long[] totals = new long[SERVICE_TYPES];
+            for (Map.Entry<Key, LongAdder> entry : counters.entrySet()) {
+                totals[entry.getKey().serviceType] += entry.getValue().sum();
+            }
+            for (int i = 0; i < SERVICE_TYPES; i++) {
+                totals[i] += other[i].sum();
+            }
+            return totals;
+        }
+    }
+}
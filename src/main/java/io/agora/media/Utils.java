@@ -68,12 +68,43 @@ public class Utils {
         return new SecureRandom().nextInt();
     }
 
+    /**
+     * Identifies a version 007 token by its App ID, salt and issue timestamp. Distinct tokens of
+     * one app never share an identifier; tokens of different apps rarely do.
+     *
+     * @param appId The App ID.
+     * @param salt The token salt.
+     * @param issueTs The token issue timestamp.
+     * @return The identifier.
+     */
+    public static long tokenId(String appId, int salt, int issueTs) {
+        return mix64(((long) salt << 32 | (issueTs & 0xFFFFFFFFL)) ^ mix64(appId.hashCode()));
+    }
+
+    /**
+     * The MurmurHash3 64-bit finalizer: a bijection that spreads every input bit over the output.
+     */
+    static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
     public static boolean isUUID(String uuid) {
         if (uuid.length() != 32) {
             return false;
         }
 
-        return uuid.matches("\\p{XDigit}+");
+        for (int i = 0; i < 32; i++) {
+            char c = uuid.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public static byte[] compress(byte[] data) {
@@ -0,0 +1,39 @@
+package io.agora.media;
+
+/**
+ * Outcome of verifying a token or dynamic key.
+ */
+public enum VerifyResult {
+    OK,
+    /** The token could not be decoded. */
+    MALFORMED,
+    /** The token does not start with the expected version string. */
+    VERSION_MISMATCH,
+    /** The token was issued for another App ID. */
+    APP_ID_MISMATCH,
+    /** The token was issued for another channel. */
+    CHANNEL_MISMATCH,
+    /** The token was issued for another user. */
+    UID_MISMATCH,
+    /** The signature does not match the App Certificate. */
+    SIGNATURE_MISMATCH,
+    /** The token has expired. */
+    EXPIRED,
+    /** The token does not grant the requested privilege. */
+    PRIVILEGE_NOT_GRANTED,
+    /** The token carries a service type or privilege value this verifier does not know. */
+    UNKNOWN_SERVICE,
+    /** The token was revoked before it expired. */
+    REVOKED,
+    /** The token was already presented to a verifier that accepts each token once. */
+    REPLAYED,
+    /**
+     * The token expires later than the window of the verifier's replay guard, which could not
+     * remember it until it expires. The window is shorter than the lifetime of the tokens issued.
+     */
+    REPLAY_WINDOW_EXCEEDED;
+
+    public boolean isValid() {
+        return this == OK;
+    }
+}
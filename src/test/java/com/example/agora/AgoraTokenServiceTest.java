@@ -1,6 +1,33 @@
 package com.example.agora;
+import io.agora.media.AccessToken2;
+import io.agora.media.AccessToken2Verifier;
+import io.agora.media.AppCredentials;
+import io.agora.media.CodecPool;
+import io.agora.media.RotatingCredentials;
+import io.agora.media.UsageCounters;
+import io.agora.media.Utils;
 import io.agora.media.RtcTokenBuilder2.Role;
 import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class AgoraTokenServiceTest {
@@ -76,4 +103,565 @@ public class AgoraTokenServiceTest {
         assertFalse(token.isEmpty(), "Token should not be empty");
         System.out.println("Generated token with 2-hour expiration: " + token);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCachedTokenIsReused() {
+        // Test parameters
+        AgoraTokenService cachingService = new AgoraTokenService(appId, appCertificate);
+        cachingService.setTokenCache(new IssuedTokenCache(100));
+        String channelName = "test-channel";
+        int uid = 12345;
+        int expireSeconds = 3600; // 1 hour
+
+        // Generate the same token twice, then with another role
+        String first = cachingService.generateRtcToken(channelName, uid, Role.ROLE_PUBLISHER, expireSeconds);
+        String second = cachingService.generateRtcToken(channelName, uid, Role.ROLE_PUBLISHER, expireSeconds);
+        String subscriber = cachingService.generateRtcToken(channelName, uid, Role.ROLE_SUBSCRIBER, expireSeconds);
+
+        // Verify cache behaviour
+        assertEquals(first, second, "Identical request should be served from the cache");
+        assertNotEquals(first, subscriber, "Different role should not share a cached token");
+        assertEquals(1, cachingService.getTokenCache().getHitCount());
+        assertEquals(2, cachingService.getTokenCache().getMissCount());
+    }
+
+    @Test
+    public void testCachedTokenIsOnlyServedForItsCredentials() {
+        // Test parameters
+        RotatingCredentials credentials = new RotatingCredentials(appId, appCertificate);
+        IssuedTokenCache cache = new IssuedTokenCache(100);
+        TokenRequestKey key = new TokenRequestKey("test-channel", "12345", Role.ROLE_PUBLISHER, 3600);
+        AppCredentials retired = credentials.current();
+
+        // A build that read the old credentials finishes after the rotation
+        credentials.rotate("5cfd2fd1755d40ecb72977518be15d3b", 0);
+        cache.put(key, "old-token", retired);
+
+        // Verify the token is not served for the new credentials
+        assertNull(cache.get(key, credentials.current()), "Token of a retired certificate should not be served");
+        assertNull(cache.getUnexpired(key, credentials.current()));
+        assertEquals(0, cache.size(), "Token of a retired certificate should be dropped");
+        cache.put(key, "new-token", credentials.current());
+        assertEquals("new-token", cache.get(key, credentials.current()));
+    }
+
+    @Test
+    public void testBuildFailurePropagates() {
+        // Test parameters
+        AgoraTokenService cachingService = new AgoraTokenService(appId, appCertificate);
+        cachingService.setTokenCache(new IssuedTokenCache(100));
+        char[] account = new char[4096];
+        Arrays.fill(account, 'a');
+
+        // An account too long to pack fails the build instead of yielding an empty token
+        assertThrows(RuntimeException.class,
+                () -> cachingService.generateRtcTokenWithUserAccount("test-channel", new String(account), Role.ROLE_PUBLISHER, 3600));
+        assertEquals(0, cachingService.getTokenCache().size(), "A failed build should not be cached");
+        assertEquals(0, cachingService.getCodecPool().getInUseCount(), "The codec should be returned to the pool");
+    }
+
+    @Test
+    public void testPrefetchedMeetingTokenIsServed() throws Exception {
+        // Test parameters
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        AgoraTokenService prefetchingService = new AgoraTokenService(appId, appCertificate);
+        MeetingPrefetcher prefetcher = new MeetingPrefetcher(prefetchingService, executor, 60);
+        prefetchingService.setMeetingPrefetcher(prefetcher);
+        String channelName = "meeting-channel";
+        int startTime = (int) (System.currentTimeMillis() / 1000) + 30;
+        int durationMinutes = 45;
+
+        // Register a meeting starting within the lead time, so tokens are built right away
+        prefetcher.scheduleMeeting(channelName, Arrays.asList(1001, 1002), startTime, durationMinutes);
+        for (int i = 0; i < 500 && prefetcher.getPrefetchedCount() < 2; i++) {
+            Thread.sleep(10);
+        }
+
+        // Verify the prefetched token is served until the meeting is cancelled
+        String first = prefetchingService.generateMeetingToken(channelName, 1001, durationMinutes);
+        String second = prefetchingService.generateMeetingToken(channelName, 1001, durationMinutes);
+        assertEquals(2, prefetcher.getPrefetchedCount());
+        assertEquals(first, second, "Prefetched token should be served");
+        assertEquals(first, prefetchingService.generateMeetingTokenAsync(channelName, 1001, durationMinutes).get());
+        assertEquals(3, prefetchingService.getIssuedCount(), "Served prefetched tokens should be counted");
+        prefetcher.cancelMeeting(channelName);
+        assertEquals(0, prefetcher.getPrefetchedCount());
+        assertNotEquals(first, prefetchingService.generateMeetingToken(channelName, 1001, durationMinutes));
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testMeetingsInTheSameChannelAreKeptApart() throws Exception {
+        // Test parameters
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        AgoraTokenService prefetchingService = new AgoraTokenService(appId, appCertificate);
+        MeetingPrefetcher prefetcher = new MeetingPrefetcher(prefetchingService, executor, 60);
+        prefetchingService.setMeetingPrefetcher(prefetcher);
+        String channelName = "recurring-channel";
+        int firstStart = Utils.getTimestamp() + 30;
+        int durationMinutes = 45;
+
+        prefetcher.scheduleMeeting(channelName, Arrays.asList(1001), firstStart, durationMinutes);
+        for (int i = 0; i < 500 && prefetcher.getPrefetchedCount() < 1; i++) {
+            Thread.sleep(10);
+        }
+        String first = prefetcher.getToken(channelName, "1001", durationMinutes);
+        assertNotNull(first);
+
+        // The next occurrence prefetches under the same token key
+        prefetcher.scheduleMeeting(channelName, Arrays.asList(1001), firstStart + 10, durationMinutes);
+        String second = first;
+        for (int i = 0; i < 500 && first.equals(second); i++) {
+            Thread.sleep(10);
+            second = prefetcher.getToken(channelName, "1001", durationMinutes);
+        }
+        assertNotEquals(first, second, "Next occurrence should prefetch its own token");
+        assertEquals(2, prefetcher.getMeetingCount(), "Both occurrences should stay registered");
+
+        // Cancelling the first occurrence leaves the token of the next one
+        prefetcher.cancelMeeting(channelName, firstStart);
+        assertEquals(1, prefetcher.getMeetingCount());
+        assertEquals(second, prefetcher.getToken(channelName, "1001", durationMinutes));
+        prefetcher.cancelMeeting(channelName);
+        assertEquals(0, prefetcher.getMeetingCount());
+        assertEquals(0, prefetcher.getPrefetchedCount());
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testPrefetchedMeetingTokenIsDroppedOnRotation() throws Exception {
+        // Test parameters
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        AgoraTokenService prefetchingService = new AgoraTokenService(new RotatingCredentials(appId, appCertificate));
+        MeetingPrefetcher prefetcher = new MeetingPrefetcher(prefetchingService, executor, 60);
+        prefetchingService.setMeetingPrefetcher(prefetcher);
+        String channelName = "rotating-meeting-channel";
+        String newCertificate = "5cfd2fd1755d40ecb72977518be15d3b";
+        int durationMinutes = 45;
+
+        prefetcher.scheduleMeeting(channelName, Arrays.asList(1001), Utils.getTimestamp() + 30, durationMinutes);
+        for (int i = 0; i < 500 && prefetcher.getPrefetchedCount() < 1; i++) {
+            Thread.sleep(10);
+        }
+        String prefetched = prefetchingService.generateMeetingToken(channelName, 1001, durationMinutes);
+
+        // After a rotation, the token signed with the old certificate is no longer served
+        prefetchingService.getRotation().rotate(newCertificate, 0);
+        String token = prefetchingService.generateMeetingToken(channelName, 1001, durationMinutes);
+        assertNotEquals(prefetched, token);
+        assertEquals(0, prefetcher.getPrefetchedCount(), "Stale prefetched token should be dropped");
+        assertTrue(new AccessToken2Verifier(appId, newCertificate).verify(token).isValid());
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testPrefetchedMeetingTokenIsNotServedNearItsEnd() throws Exception {
+        // Test parameters
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        AgoraTokenService prefetchingService = new AgoraTokenService(appId, appCertificate);
+        MeetingPrefetcher prefetcher = new MeetingPrefetcher(prefetchingService, executor, 60);
+        prefetchingService.setMeetingPrefetcher(prefetcher);
+        String channelName = "late-meeting-channel";
+        int durationMinutes = 45;
+        int startTime = Utils.getTimestamp() - 40 * 60;
+
+        // The meeting started 40 minutes ago, so its prefetched tokens expire in about 5 minutes
+        prefetcher.scheduleMeeting(channelName, Arrays.asList(1001), startTime, durationMinutes);
+        for (int i = 0; i < 500 && prefetcher.getPrefetchedCount() < 1; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, prefetcher.getPrefetchedCount());
+
+        // A late joiner gets a fresh token valid for the full duration
+        AccessToken2 token = new AccessToken2();
+        assertTrue(token.parse(prefetchingService.generateMeetingToken(channelName, 1001, durationMinutes)));
+        assertEquals(durationMinutes * 60, token.expire, "Token near its end should not be served");
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testGenerateTokenAsync() throws Exception {
+        // Test parameters
+        AgoraTokenService asyncService = new AgoraTokenService(appId, appCertificate);
+        asyncService.setExecutor(TokenExecutor.bounded(2, 16));
+        String channelName = "test-channel";
+        int uid = 12345;
+        int expireSeconds = 3600; // 1 hour
+
+        // Generate token off the calling thread
+        String token = asyncService.generateRtcTokenAsync(channelName, uid, Role.ROLE_PUBLISHER, expireSeconds)
+                .get(5, TimeUnit.SECONDS);
+
+        // Verify token and executor metrics
+        for (int i = 0; i < 500 && asyncService.getExecutor().getCompletedCount() < 1; i++) {
+            Thread.sleep(1);
+        }
+        assertNotNull(token, "Token should not be null");
+        assertFalse(token.isEmpty(), "Token should not be empty");
+        assertEquals(1, asyncService.getExecutor().getCompletedCount());
+        assertEquals(0, asyncService.getExecutor().getQueueDepth());
+        asyncService.getExecutor().shutdown();
+    }
+
+    @Test
+    public void testAsyncBuildsReuseCodecs() throws Exception {
+        // Test parameters
+        AgoraTokenService asyncService = new AgoraTokenService(appId, appCertificate);
+        TokenExecutor executor = TokenExecutor.createDefault();
+        asyncService.setExecutor(executor);
+        asyncService.setCodecPool(new CodecPool(4));
+
+        // Build tokens one after another, each on its own task
+        for (int uid = 1; uid <= 20; uid++) {
+            asyncService.generateRtcTokenAsync("test-channel", uid, Role.ROLE_PUBLISHER, 3600).get(5, TimeUnit.SECONDS);
+        }
+
+        // Codecs come from the pool, whatever thread the task ran on
+        assertEquals(1, asyncService.getCodecPool().getCreatedCount(), "Sequential builds should share one codec");
+        assertEquals(0, asyncService.getCodecPool().getInUseCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testGenerateRosterTokens() {
+        // Test parameters
+        String channelName = "test-channel";
+        List<Integer> uids = new ArrayList<>();
+        for (int uid = 1000; uid < 1200; uid++) {
+            uids.add(uid);
+        }
+        AccessToken2Verifier verifier = new AccessToken2Verifier(appId, appCertificate);
+
+        // Generate tokens
+        Map<Integer, String> tokens = tokenService.generateRtcTokens(channelName, uids, Role.ROLE_SUBSCRIBER, 3600);
+
+        // Verify tokens
+        assertEquals(uids, new ArrayList<>(tokens.keySet()), "Tokens should be returned in roster order");
+        for (Map.Entry<Integer, String> entry : tokens.entrySet()) {
+            AccessToken2Verifier.Verification verification = verifier.verify(entry.getValue());
+            assertTrue(verification.isValid(), "Roster token should verify");
+            AccessToken2.ServiceRtc service = (AccessToken2.ServiceRtc) verification.getToken().services.get(AccessToken2.SERVICE_TYPE_RTC);
+            assertEquals(String.valueOf(entry.getKey()), service.getUid(), "Roster token should carry its own UID");
+            assertEquals(1, service.getPrivileges().size(), "Subscriber token should only allow joining");
+        }
+    }
+
+    @Test
+    public void testIssuanceEventsReachSubscribers() throws Exception {
+        // Test parameters
+        BlockingQueue<TokenIssuedEvent> events = new LinkedBlockingQueue<>();
+        AsyncTokenEventSink sink = new AsyncTokenEventSink(64);
+        sink.subscribe(events::add);
+        sink.subscribe(TokenEventListener.console());
+        tokenService.setEventSink(sink);
+
+        // Generate tokens
+        tokenService.generateRtcToken("test-channel", 12345, Role.ROLE_PUBLISHER, 3600);
+        tokenService.generateRtcTokensWithUserAccounts("test-channel", Arrays.asList("a", "b"), Role.ROLE_SUBSCRIBER, 600);
+
+        // Verify events
+        TokenIssuedEvent single = events.poll(5, TimeUnit.SECONDS);
+        TokenIssuedEvent roster = events.poll(5, TimeUnit.SECONDS);
+        sink.close();
+        assertNotNull(single, "Single token event should be delivered");
+        assertEquals("UID-based token: UID=12345, Channel=test-channel, Expires=3600s", single.toString());
+        assertNotNull(roster, "Roster event should be delivered");
+        assertEquals(TokenIssuedEvent.Kind.USER_ACCOUNT, roster.getKind());
+        assertEquals(2, roster.getCount(), "Roster event should count its tokens");
+        assertEquals(0, sink.getDroppedCount(), "No event should be dropped");
+    }
+
+    @Test
+    public void testCloseDeliversEveryAcceptedEvent() throws Exception {
+        // Test parameters
+        AsyncTokenEventSink sink = new AsyncTokenEventSink(1 << 16);
+        LongAdder delivered = new LongAdder();
+        sink.subscribe(event -> delivered.increment());
+        TokenIssuedEvent event = new TokenIssuedEvent(TokenIssuedEvent.Kind.UID, "test-channel", null, Role.ROLE_PUBLISHER, 3600, 1, 0);
+        Thread[] publishers = new Thread[4];
+
+        // Close the sink while publishers are still running
+        for (int i = 0; i < publishers.length; i++) {
+            publishers[i] = new Thread(() -> {
+                for (int j = 0; j < 20_000; j++) {
+                    sink.publish(event);
+                }
+            });
+            publishers[i].start();
+        }
+        Thread.sleep(5);
+        sink.close();
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+
+        // Every event the sink accepted was delivered before close returned
+        assertEquals(sink.getPublishedCount(), delivered.sum(), "Accepted events should not be lost on close");
+        assertEquals(4 * 20_000, sink.getPublishedCount() + sink.getDroppedCount());
+    }
+
+    @Test
+    public void testCloseFromSubscriberDoesNotDeadlock() {
+        // Test parameters
+        AsyncTokenEventSink sink = new AsyncTokenEventSink(64);
+        sink.subscribe(event -> sink.close());
+
+        // A subscriber closing the sink returns instead of waiting for its own thread
+        sink.publish(new TokenIssuedEvent(TokenIssuedEvent.Kind.UID, "test-channel", null, Role.ROLE_PUBLISHER, 3600, 1, 0));
+        assertTimeoutPreemptively(Duration.ofSeconds(5), sink::close, "Close from a subscriber should not hang the delivery thread");
+    }
+
+    @Test
+    public void testTenantRegistryRoutesByAppId() {
+        // Test parameters
+        String otherAppId = "970ca35de60c44645bbae8a215061b33";
+        String otherCertificate = "5cfd2fd1755d40ecb72977518be15d3b";
+        TenantRegistry registry = new TenantRegistry(2, 16);
+        registry.register(appId, appCertificate);
+        registry.register(otherAppId, otherCertificate);
+
+        // Generate tokens
+        String token = registry.route(appId).generateRtcToken("test-channel", 12345, Role.ROLE_PUBLISHER, 3600);
+        String otherToken = registry.route(otherAppId).generateRtcToken("test-channel", 12345, Role.ROLE_PUBLISHER, 3600);
+
+        // Verify tokens
+        assertTrue(new AccessToken2Verifier(appId, appCertificate).verify(token).isValid(), "Token should be signed by its own app");
+        assertTrue(new AccessToken2Verifier(otherAppId, otherCertificate).verify(otherToken).isValid(), "Token should be signed by its own app");
+        assertNull(registry.get("00000000000000000000000000000000"), "Unknown app should not be routed");
+        assertThrows(IllegalArgumentException.class, () -> registry.register(appId, "not-a-certificate"));
+        assertThrows(IllegalStateException.class, () -> registry.register("00000000000000000000000000000000", appCertificate));
+    }
+
+    @Test
+    public void testTenantRegistryRotatesCertificateInPlace() {
+        // Test parameters
+        String newCertificate = "5cfd2fd1755d40ecb72977518be15d3b";
+        TenantRegistry registry = new TenantRegistry(2, 16);
+        AgoraTokenService service = registry.register(appId, appCertificate);
+        RateLimiter limiter = new RateLimiter(100, 10, 100);
+        service.setUserRateLimiter(limiter);
+
+        // Registering a new certificate keeps the service and its configuration
+        assertSame(service, registry.register(appId, newCertificate), "Service should be kept");
+        assertSame(limiter, service.getUserRateLimiter());
+        String token = service.generateRtcToken("test-channel", 12345, Role.ROLE_PUBLISHER, 3600);
+        assertTrue(new AccessToken2Verifier(appId, newCertificate).verify(token).isValid(), "Token should be signed with the new certificate");
+        assertEquals(appCertificate, service.getRotation().snapshot(Utils.getTimestamp()).getPrevious(Utils.getTimestamp()).getAppCertificate(),
+                "Old certificate should stay accepted for the grace window");
+    }
+
+    @Test
+    public void testCertificateRotation() {
+        // Test parameters
+        String newCertificate = "5cfd2fd1755d40ecb72977518be15d3b";
+        RotatingCredentials credentials = new RotatingCredentials(appId, appCertificate);
+        AgoraTokenService service = new AgoraTokenService(credentials);
+        int now = Utils.getTimestamp();
+
+        // Schedule a rotation in the future, then activate one now
+        credentials.scheduleRotation(newCertificate, now + 3600, 600);
+        String before = service.generateRtcToken("test-channel", 12345, Role.ROLE_PUBLISHER, 3600);
+        credentials.rotate(newCertificate, 600);
+        String after = service.generateRtcToken("test-channel", 12345, Role.ROLE_PUBLISHER, 3600);
+
+        // Verify tokens
+        assertTrue(new AccessToken2Verifier(appId, appCertificate).verify(before).isValid(), "Token should be signed with the old certificate before activation");
+        assertTrue(new AccessToken2Verifier(appId, newCertificate).verify(after).isValid(), "Token should be signed with the new certificate after activation");
+        RotatingCredentials.Snapshot snapshot = credentials.snapshot(Utils.getTimestamp());
+        assertEquals(appCertificate, snapshot.getPrevious(now).getAppCertificate(), "Old certificate should be accepted during the grace window");
+        assertNull(snapshot.getPrevious(now + 601), "Old certificate should not be accepted after the grace window");
+    }
+
+    @Test
+    public void testRateLimitedUserIsRejectedOrServedFromCache() {
+        // Test parameters
+        tokenService.setUserRateLimiter(new RateLimiter(0.001, 2, 100));
+
+        // Generate tokens until the user is over quota
+        tokenService.generateRtcTokenWithUserAccount("test-channel", "noisy-user", Role.ROLE_PUBLISHER, 3600);
+        tokenService.generateRtcTokenWithUserAccount("test-channel", "noisy-user", Role.ROLE_PUBLISHER, 3600);
+        TokenRejectedException rejected = assertThrows(TokenRejectedException.class,
+                () -> tokenService.generateRtcTokenWithUserAccount("test-channel", "noisy-user", Role.ROLE_PUBLISHER, 3600));
+
+        // Verify quota handling
+        assertEquals(TokenRejectedException.Reason.RATE_LIMITED, rejected.getReason());
+        assertFalse(tokenService.generateRtcTokenWithUserAccount("test-channel", "quiet-user", Role.ROLE_PUBLISHER, 3600).isEmpty(),
+                "Other users should not be limited");
+
+        AgoraTokenService cached = new AgoraTokenService(appId, appCertificate);
+        cached.setTokenCache(new IssuedTokenCache(10, 1.0));
+        cached.setUserRateLimiter(new RateLimiter(0.001, 1, 100));
+        String token = cached.generateRtcTokenWithUserAccount("test-channel", "noisy-user", Role.ROLE_PUBLISHER, 3600);
+        assertEquals(token, cached.generateRtcTokenWithUserAccount("test-channel", "noisy-user", Role.ROLE_PUBLISHER, 3600),
+                "Over-quota request should be served the cached token");
+    }
+
+    @Test
+    public void testChannelRejectionDoesNotChargeTheUser() {
+        // Test parameters
+        AgoraTokenService limited = new AgoraTokenService(appId, appCertificate);
+        limited.setUserRateLimiter(new RateLimiter(0.001, 2, 100));
+        limited.setChannelRateLimiter(new RateLimiter(0.001, 1, 100));
+
+        // The second request is refused by the channel limiter
+        limited.generateRtcTokenWithUserAccount("busy-channel", "user", Role.ROLE_PUBLISHER, 3600);
+        assertThrows(TokenRejectedException.class,
+                () -> limited.generateRtcTokenWithUserAccount("busy-channel", "user", Role.ROLE_PUBLISHER, 3600));
+
+        // The user still has the permit the refused request took
+        assertFalse(limited.generateRtcTokenWithUserAccount("other-channel", "user", Role.ROLE_PUBLISHER, 3600).isEmpty(),
+                "Refused request should not use up the user's quota");
+    }
+
+    @Test
+    public void testOverQuotaRequestIsNotServedTokenOfRetiredCertificate() {
+        // Test parameters
+        AgoraTokenService cached = new AgoraTokenService(new RotatingCredentials(appId, appCertificate));
+        cached.setTokenCache(new IssuedTokenCache(10, 1.0));
+        cached.setUserRateLimiter(new RateLimiter(0.001, 1, 100));
+
+        // Issue a token, then rotate the certificate
+        cached.generateRtcTokenWithUserAccount("test-channel", "noisy-user", Role.ROLE_PUBLISHER, 3600);
+        cached.getRotation().rotate("5cfd2fd1755d40ecb72977518be15d3b", 0);
+
+        // The cached token was signed with the retired certificate, so the request is refused
+        TokenRejectedException rejected = assertThrows(TokenRejectedException.class,
+                () -> cached.generateRtcTokenWithUserAccount("test-channel", "noisy-user", Role.ROLE_PUBLISHER, 3600));
+        assertEquals(TokenRejectedException.Reason.RATE_LIMITED, rejected.getReason());
+    }
+
+    @Test
+    public void testOverloadedServiceFailsFast() throws Exception {
+        // Test parameters
+        AdmissionController controller = new AdmissionController(1, 1, 4, 1_000_000);
+        tokenService.setAdmissionController(controller);
+
+        // Occupy the only admitted build
+        assertTrue(controller.tryAcquire(), "First build should be admitted");
+        TokenRejectedException rejected = assertThrows(TokenRejectedException.class,
+                () -> tokenService.generateRtcToken("test-channel", 12345, Role.ROLE_PUBLISHER, 3600));
+        controller.release(1000, false);
+
+        // Verify admission
+        assertEquals(TokenRejectedException.Reason.OVERLOADED, rejected.getReason());
+        assertFalse(tokenService.generateRtcToken("test-channel", 12345, Role.ROLE_PUBLISHER, 3600).isEmpty(),
+                "Build should be admitted once capacity is free");
+        assertEquals(0, controller.getInFlight(), "Finished builds should be released");
+        assertEquals(1, controller.getRejectedCount());
+    }
+
+    @Test
+    public void testRosterTokensAreAdmittedOneByOne() {
+        // Test parameters
+        AdmissionController controller = new AdmissionController(64, 1, 64, 1_000_000);
+        tokenService.setAdmissionController(controller);
+        List<Integer> uids = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        long latencySamples = tokenService.getBuildLatency().getCount();
+
+        tokenService.generateRtcTokens("test-channel", uids, Role.ROLE_SUBSCRIBER, 3600);
+
+        // Verify admission
+        assertEquals(uids.size(), controller.getAdmittedCount(), "Each roster token should be admitted");
+        assertEquals(uids.size(), tokenService.getBuildLatency().getCount() - latencySamples,
+                "Each roster token should record its latency");
+        assertEquals(0, controller.getInFlight(), "Finished builds should be released");
+    }
+
+    @Test
+    public void testManagementBean() throws Exception {
+        // Test parameters
+        tokenService.setTokenCache(new IssuedTokenCache(10));
+        TokenServiceManagement management = new TokenServiceManagement(tokenService);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        ObjectName name = management.register("test");
+        try {
+            tokenService.generateRtcToken("test-channel", 12345, Role.ROLE_PUBLISHER, 3600);
+            tokenService.generateRtcToken("test-channel", 12345, Role.ROLE_PUBLISHER, 3600);
+
+            // Verify attributes
+            assertEquals(2L, server.getAttribute(name, "IssuedCount"));
+            assertEquals(1, server.getAttribute(name, "TokenCacheSize"));
+            assertEquals(0.5, (Double) server.getAttribute(name, "TokenCacheHitRate"), 0.001);
+            assertTrue((Long) server.getAttribute(name, "BuildLatencyP99Micros") >= 0);
+            assertEquals(1L, server.getAttribute(name, "CodecPoolCreated"));
+            assertEquals(0, server.getAttribute(name, "ExecutorThreads"));
+            assertNull(tokenService.currentExecutor(), "Reading attributes should not create an executor");
+
+            // Verify operations
+            server.invoke(name, "flushCaches", null, null);
+            assertEquals(0, server.getAttribute(name, "TokenCacheSize"), "Cache should be flushed");
+            server.invoke(name, "resizeCodecPool", new Object[] { 0 }, new String[] { int.class.getName() });
+            assertEquals(0, server.getAttribute(name, "CodecPoolIdle"), "Idle codecs should be dropped");
+            server.invoke(name, "enableProfiling", new Object[] { 8 }, new String[] { int.class.getName() });
+            assertEquals(8, server.getAttribute(name, "ProfilingSampleEvery"));
+            server.invoke(name, "disableProfiling", null, null);
+            assertEquals(false, server.getAttribute(name, "ProfilingEnabled"));
+        } finally {
+            management.unregister();
+        }
+        assertFalse(server.isRegistered(name), "MBean should be unregistered");
+    }
+
+    @Test
+    public void testUsageCountersExportTopChannels() throws Exception {
+        // Test parameters
+        UsageCounters usage = new UsageCounters(1);
+        tokenService.setUsageCounters(usage);
+        Path directory = Files.createTempDirectory("usage");
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+        try (UsageExporter exporter = new UsageExporter(usage, directory, executor, 3600)) {
+            tokenService.generateRtcTokens("busy-channel", Arrays.asList(1, 2, 3), Role.ROLE_PUBLISHER, 3600);
+            tokenService.generateRtcToken("quiet,channel", 4, Role.ROLE_SUBSCRIBER, 3600);
+            tokenService.generateRtcToken("third-channel", 5, Role.ROLE_SUBSCRIBER, 3600);
+
+            List<String> lines = Files.readAllLines(exporter.export());
+            assertEquals(3, lines.size(), "Header, the busiest channel and the other row expected: " + lines);
+            assertTrue(lines.get(1).endsWith("," + appId + ",busy-channel,1,3"), lines.get(1));
+            assertTrue(lines.get(2).endsWith(",other,other,1,2"), lines.get(2));
+            assertEquals(0, usage.snapshotAndReset().getTotal(), "Counters should be reset by the export");
+        } finally {
+            executor.shutdownNow();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testUsageCountersKeepCountsRecordedDuringSnapshots() throws Exception {
+        // Test parameters
+        UsageCounters usage = new UsageCounters(1);
+        int threads = 4;
+        int recordsPerThread = 20000;
+        short rtc = AccessToken2.SERVICE_TYPE_RTC;
+
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < recordsPerThread; i++) {
+                    usage.record(appId, "channel-" + (i % 3), rtc, 1);
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+
+        // Snapshot while the writers are running, then twice more to drain late counts
+        long total = 0;
+        for (Thread writer : writers) {
+            while (writer.isAlive()) {
+                total += usage.snapshotAndReset().getTotal();
+            }
+            writer.join();
+        }
+        total += usage.snapshotAndReset().getTotal();
+        total += usage.snapshotAndReset().getTotal();
+
+        assertEquals((long) threads * recordsPerThread, total, "No count should be lost across snapshots");
+    }
+}
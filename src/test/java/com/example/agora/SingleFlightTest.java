@@ -0,0 +1,65 @@
+package com.example.agora;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+    @Test
+    public void testConcurrentIdenticalRequestsShareOneExecution() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger builds = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // Start one slow build, then pile identical requests on top of it
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                builds.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "token";
+            })));
+        }
+        while (singleFlight.getExecutionCount() + singleFlight.getSharedCount() < 8) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        // Verify every caller got the single result
+        for (Future<String> result : results) {
+            assertEquals("token", result.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(1, builds.get(), "Only one build should run");
+        assertEquals(7, singleFlight.getSharedCount());
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void testAsyncCallersJoinInFlightRequest() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> build = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.executeAsync("key", () -> build);
+        CompletableFuture<String> second = singleFlight.executeAsync("key", () -> CompletableFuture.completedFuture("other"));
+        build.complete("token");
+
+        assertEquals("token", first.join());
+        assertEquals("token", second.join(), "Second caller should share the first build");
+        assertEquals(1, singleFlight.getExecutionCount());
+    }
+}
@@ -0,0 +1,252 @@
+package io.agora.media;
+import io.agora.rtm.RtmTokenBuilder2;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccessToken2VerifierTest {
+    private final String appId = "e7f19b4ccadd45cfa77f472983a8c858";
+    private final String appCertificate = "3c8e689c851244d2bc90c10e93d9d619";
+    private final AccessToken2Verifier verifier = new AccessToken2Verifier(appId, appCertificate);
+
+    private String buildRtcToken(int uid) {
+        return new RtcTokenBuilder2().buildTokenWithUid(appId, appCertificate, "test-channel", uid,
+                RtcTokenBuilder2.Role.ROLE_PUBLISHER, 3600, 3600);
+    }
+
+    @Test
+    public void testVerifyValidTokens() {
+        AccessToken2Verifier.Verification rtc = verifier.verify(buildRtcToken(12345));
+        AccessToken2Verifier.Verification rtm = verifier.verify(new RtmTokenBuilder2().buildToken(appId, appCertificate, "test-user", 3600));
+
+        assertEquals(VerifyResult.OK, rtc.getResult());
+        assertEquals(VerifyResult.OK, rtm.getResult());
+        AccessToken2.ServiceRtc service = (AccessToken2.ServiceRtc) rtc.getToken().services.get(AccessToken2.SERVICE_TYPE_RTC);
+        assertEquals("test-channel", service.getChannelName());
+        assertEquals("12345", service.getUid());
+    }
+
+    @Test
+    public void testRejectInvalidTokens() {
+        String token = buildRtcToken(12345);
+        AccessToken2Verifier other = new AccessToken2Verifier(appId, "00000000000000000000000000000000");
+
+        assertEquals(VerifyResult.SIGNATURE_MISMATCH, other.verify(token).getResult());
+        assertEquals(VerifyResult.EXPIRED, verifier.verify(token, Utils.getTimestamp() + 7200).getResult());
+        assertEquals(VerifyResult.VERSION_MISMATCH, verifier.verify("006" + token.substring(3)).getResult());
+        assertEquals(VerifyResult.MALFORMED, verifier.verify("007AAAA").getResult());
+    }
+
+    @Test
+    public void testCodecMatchesReferenceEncoding() throws Exception {
+        // Test parameters
+        AccessToken2 accessToken = new AccessToken2(appId, appCertificate, 600);
+        AccessToken2.ServiceRtc rtc = new AccessToken2.ServiceRtc("test-channel", "12345");
+        rtc.addPrivilegeRtc(AccessToken2.PrivilegeRtc.PRIVILEGE_JOIN_CHANNEL, 600);
+        rtc.addPrivilegeRtc(AccessToken2.PrivilegeRtc.PRIVILEGE_PUBLISH_AUDIO_STREAM, 600);
+        accessToken.addService(rtc);
+
+        // Reference: the original allocate-per-call encoding
+        ByteBuf buf = new ByteBuf().put(appId).put(accessToken.issueTs).put(accessToken.expire).put(accessToken.salt).put((short) 1);
+        rtc.pack(buf);
+        javax.crypto.Mac mac = javax.crypto.Mac.getInstance("HmacSHA256");
+        mac.init(new javax.crypto.spec.SecretKeySpec(accessToken.getSign(), "HmacSHA256"));
+        ByteBuf content = new ByteBuf().put(mac.doFinal(buf.asBytes()));
+        content.buffer.put(buf.asBytes());
+        String expected = AccessToken2.getVersion() + Utils.base64Encode(Utils.compress(content.asBytes()));
+
+        AccessToken2Codec codec = new AccessToken2Codec();
+        byte[] prefix = AccessToken2Codec.packRtcPrefix("test-channel", rtc.getPrivileges());
+
+        assertEquals(expected, accessToken.build(), "build() should produce the reference token");
+        assertEquals(expected, codec.encode(accessToken), "Encoding twice with one codec should be stable");
+        assertEquals(expected, codec.encodeRtc(new AppCredentials(appId, appCertificate), accessToken.issueTs, accessToken.expire,
+                accessToken.salt, prefix, "12345"), "Pre-packed RTC encoding should produce the reference token");
+    }
+
+    @Test
+    public void testVerifyDuringCertificateRotation() {
+        // Test parameters
+        String newCertificate = "5cfd2fd1755d40ecb72977518be15d3b";
+        AccessToken2Verifier rotating = new AccessToken2Verifier(appId, appCertificate, newCertificate);
+        List<String> newTokens = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            newTokens.add(new RtcTokenBuilder2().buildTokenWithUid(appId, newCertificate, "test-channel", i + 1,
+                    RtcTokenBuilder2.Role.ROLE_PUBLISHER, 3600, 3600));
+        }
+
+        // Verify tokens signed with either certificate
+        assertTrue(rotating.verify(buildRtcToken(12345)).isValid(), "Token signed with the primary certificate should verify");
+        for (String token : newTokens) {
+            assertTrue(rotating.verify(token).isValid(), "Token signed with the secondary certificate should verify");
+        }
+        assertEquals(VerifyResult.SIGNATURE_MISMATCH, new AccessToken2Verifier(appId, appCertificate, appCertificate)
+                .verify(newTokens.get(0)).getResult());
+
+        // Tokens of the same issue range are checked against the remembered certificate first
+        assertTrue(rotating.getFallbackCount() <= 2, "Most tokens should verify with a single certificate");
+    }
+
+    @Test
+    public void testRevokedTokensAreRejected() {
+        // Test parameters
+        RevocationList revocations = new RevocationList(16);
+        AccessToken2Verifier revokingVerifier = new AccessToken2Verifier(appId, appCertificate);
+        revokingVerifier.setRevocationList(revocations);
+        String revoked = buildRtcToken(12345);
+        String kept = buildRtcToken(67890);
+
+        revocations.revoke(revokingVerifier.verify(revoked).getToken());
+        assertEquals(VerifyResult.REVOKED, revokingVerifier.verify(revoked).getResult());
+        assertEquals(VerifyResult.OK, revokingVerifier.verify(kept).getResult(), "Other tokens should still verify");
+
+        // Revocations are forgotten once the token has expired
+        revocations.purgeExpired(Utils.getTimestamp() + 7200);
+        assertEquals(0, revocations.size());
+        assertEquals(VerifyResult.OK, revokingVerifier.verify(revoked).getResult());
+    }
+
+    @Test
+    public void testVerificationLeavesRevocationsAlone() {
+        // Test parameters
+        RevocationList revocations = new RevocationList(16);
+        AccessToken2Verifier revokingVerifier = new AccessToken2Verifier(appId, appCertificate);
+        revokingVerifier.setRevocationList(revocations);
+        int now = Utils.getTimestamp();
+
+        revocations.revoke(appId, 1, now - 3600, now + 30);
+        revocations.revoke(appId, 2, now, Integer.MAX_VALUE);
+        AccessToken2 longLived = new AccessToken2(appId, appCertificate, Integer.MAX_VALUE - 10);
+        longLived.issueTs = Integer.MAX_VALUE - 100;
+        revocations.revoke(longLived);
+        assertEquals(3, revocations.size());
+
+        // Verification is read-only, even long after an entry has expired
+        revokingVerifier.verify(buildRtcToken(12345), now + 61);
+        assertEquals(3, revocations.size(), "Verification should not purge revocations");
+
+        // A purge drops the expired entry, not the one expiring last
+        revocations.purgeExpired(now + 61);
+        assertEquals(2, revocations.size(), "Expired revocations should be purged");
+        assertTrue(revocations.isRevoked(appId, longLived.salt, longLived.issueTs),
+                "A revocation whose expiration overflows an int should be kept until the end of time");
+    }
+
+    @Test
+    public void testScheduledPurgeDropsExpiredRevocations() throws Exception {
+        // Test parameters
+        RevocationList revocations = new RevocationList(16);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        int now = Utils.getTimestamp();
+
+        try {
+            revocations.revoke(appId, 1, now - 3600, now - 1);
+            revocations.revoke(appId, 2, now, now + 3600);
+            ScheduledFuture<?> task = revocations.schedulePurge(executor, 1);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (revocations.size() > 1 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            task.cancel(false);
+            assertEquals(1, revocations.size(), "The scheduled purge should drop expired revocations");
+            assertTrue(revocations.isRevoked(appId, 2, now));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testChannelWatermarkRevokesEarlierTokens() {
+        // Test parameters
+        ChannelWatermarks watermarks = new ChannelWatermarks(4);
+        AccessToken2Verifier watermarkVerifier = new AccessToken2Verifier(appId, appCertificate);
+        watermarkVerifier.setChannelWatermarks(watermarks);
+        String issued = buildRtcToken(12345);
+        String otherChannel = new RtcTokenBuilder2().buildTokenWithUid(appId, appCertificate, "other-channel", 12345,
+                RtcTokenBuilder2.Role.ROLE_PUBLISHER, 3600, 3600);
+        int issueTs = watermarkVerifier.verify(issued).getToken().issueTs;
+
+        watermarks.revokeChannel(appId, "test-channel", issueTs + 1);
+        assertEquals(VerifyResult.REVOKED, watermarkVerifier.verify(issued).getResult());
+        assertEquals(VerifyResult.OK, watermarkVerifier.verify(otherChannel).getResult(), "Other channels should still verify");
+        assertEquals(VerifyResult.OK, verifier.verify(issued).getResult(), "Verifiers without watermarks should accept the token");
+
+        // A watermark never moves back
+        watermarks.revokeChannel(appId, "test-channel", issueTs);
+        assertEquals(issueTs + 1, watermarks.getWatermark(appId, "test-channel"));
+
+        // Many channels grow the table without losing watermarks
+        for (int i = 0; i < 100; i++) {
+            watermarks.revokeChannel(appId, "channel-" + i, issueTs - i);
+        }
+        assertEquals(101, watermarks.size());
+        assertEquals(issueTs - 42, watermarks.getWatermark(appId, "channel-42"));
+        assertEquals(VerifyResult.REVOKED, watermarkVerifier.verify(issued).getResult());
+
+        watermarks.purgeBefore(issueTs - 49);
+        assertEquals(51, watermarks.size(), "Watermarks before the purge time should be removed");
+        watermarks.remove(appId, "test-channel");
+        assertEquals(VerifyResult.OK, watermarkVerifier.verify(issued).getResult());
+    }
+
+    @Test
+    public void testReplayedTokensAreRejected() {
+        // Test parameters
+        ReplayGuard guard = new ReplayGuard(3600, 60);
+        AccessToken2Verifier oneShotVerifier = new AccessToken2Verifier(appId, appCertificate);
+        oneShotVerifier.setReplayGuard(guard);
+        String token = buildRtcToken(12345);
+        int now = Utils.getTimestamp();
+
+        assertEquals(VerifyResult.OK, oneShotVerifier.verify(token, now).getResult());
+        assertEquals(VerifyResult.REPLAYED, oneShotVerifier.verify(token, now).getResult());
+        assertEquals(VerifyResult.OK, oneShotVerifier.verify(buildRtcToken(67890), now).getResult(), "Other tokens should still verify");
+        assertEquals(VerifyResult.OK, verifier.verify(token, now).getResult(), "Verifiers without a guard should accept the token");
+        assertEquals(VerifyResult.SIGNATURE_MISMATCH, oneShotVerifier.verify(new RtcTokenBuilder2().buildTokenWithUid(appId,
+                "00000000000000000000000000000000", "test-channel", 12345, RtcTokenBuilder2.Role.ROLE_PUBLISHER, 3600, 3600), now).getResult());
+        assertEquals(2, guard.size(), "Only authentic tokens should be recorded");
+
+        // Buckets are dropped whole once their tokens have expired
+        for (int salt = 0; salt < 1000; salt++) {
+            assertTrue(guard.checkAndRecord(appId, salt, now, now + 30, now));
+        }
+        assertFalse(guard.checkAndRecord(appId, 999, now, now + 30, now));
+        assertEquals(1002, guard.size());
+        // The ring holds 3600 / 60 + 2 buckets, so now + 30 + 62 * 60 maps to the slot of now + 30
+        assertTrue(guard.checkAndRecord(appId, 0, now, now + 30 + 62 * 60, now + 150));
+        assertTrue(guard.size() < 1002, "Expired buckets should be dropped as their slot is reused");
+    }
+
+    @Test
+    public void testReplayGuardRemembersTokensUntilTheyExpire() {
+        // Test parameters
+        ReplayGuard guard = new ReplayGuard(3600, 60);
+        int now = Utils.getTimestamp();
+
+        // A token is kept in the bucket of its own expiration, however late it is replayed
+        assertTrue(guard.checkAndRecord(appId, 1, now, now + 3000, now));
+        assertFalse(guard.checkAndRecord(appId, 1, now, now + 3000, now + 60), "Replay one bucket later should be rejected");
+        assertFalse(guard.checkAndRecord(appId, 1, now, now + 3000, now + 2990), "Replay near expiry should be rejected");
+
+        // A token outliving the window cannot be remembered, so it is never recorded
+        assertFalse(guard.covers(now + 7200, now));
+        assertThrows(IllegalArgumentException.class, () -> guard.checkAndRecord(appId, 2, now, now + 7200, now));
+        AccessToken2 longLived = new AccessToken2(appId, appCertificate, Integer.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> guard.checkAndRecord(longLived),
+                "Expiration overflowing an int should not be taken as expired");
+
+        // The verifier tells a window too short for the token from a replay
+        AccessToken2Verifier oneShotVerifier = new AccessToken2Verifier(appId, appCertificate);
+        oneShotVerifier.setReplayGuard(new ReplayGuard(1800, 60));
+        String token = buildRtcToken(12345);
+        assertEquals(VerifyResult.REPLAY_WINDOW_EXCEEDED, oneShotVerifier.verify(token, now).getResult());
+        assertEquals(VerifyResult.REPLAY_WINDOW_EXCEEDED, oneShotVerifier.verify(token, now).getResult());
+    }
+}
@@ -0,0 +1,89 @@
+package io.agora.media;
+import io.agora.rtm.RtmTokenBuilder;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccessTokenVerifierTest {
+    private final String appId = "e7f19b4ccadd45cfa77f472983a8c858";
+    private final String appCertificate = "3c8e689c851244d2bc90c10e93d9d619";
+    private final AccessTokenVerifier verifier = new AccessTokenVerifier(appId, appCertificate);
+
+    private String buildToken(String channelName, int uid) {
+        int privilegeTs = Utils.getTimestamp() + 3600;
+        return new RtcTokenBuilder().buildTokenWithUid(appId, appCertificate, channelName, uid,
+                RtcTokenBuilder.Role.Role_Publisher, privilegeTs);
+    }
+
+    @Test
+    public void testVerifyValidToken() {
+        String token = buildToken("test-channel", 12345);
+
+        assertEquals(VerifyResult.OK, verifier.verify(token, "test-channel", "12345"));
+    }
+
+    @Test
+    public void testRejectWrongChannelAndUid() {
+        String token = buildToken("test-channel", 12345);
+
+        assertEquals(VerifyResult.CHANNEL_MISMATCH, verifier.verify(token, "other-channel", "12345"));
+        assertEquals(VerifyResult.UID_MISMATCH, verifier.verify(token, "test-channel", "54321"));
+    }
+
+    @Test
+    public void testRejectWrongCertificate() {
+        String token = buildToken("test-channel", 12345);
+        AccessTokenVerifier other = new AccessTokenVerifier(appId, "00000000000000000000000000000000");
+
+        assertEquals(VerifyResult.SIGNATURE_MISMATCH, other.verify(token, "test-channel", "12345"));
+    }
+
+    @Test
+    public void testRejectMissingChannelAndUid() {
+        String token = buildToken("test-channel", 12345);
+
+        assertEquals(VerifyResult.CHANNEL_MISMATCH, verifier.verify(token, null, "12345"));
+        assertEquals(VerifyResult.UID_MISMATCH, verifier.verify(token, "test-channel", null));
+    }
+
+    @Test
+    public void testCheckRequestedPrivilegeExpiry() throws Exception {
+        int now = Utils.getTimestamp();
+        AccessToken builder = new AccessToken(appId, appCertificate, "test-channel", "12345");
+        builder.addPrivilege(AccessToken.Privileges.kJoinChannel, now + 3600);
+        builder.addPrivilege(AccessToken.Privileges.kPublishAudioStream, now - 10);
+        String token = builder.build();
+
+        // The token itself is valid for a day, but its publish privilege has expired
+        assertEquals(VerifyResult.OK, verifier.verify(token, "test-channel", "12345"));
+        assertEquals(VerifyResult.EXPIRED, verifier.verify(token, "test-channel", "12345", AccessToken.Privileges.kPublishAudioStream));
+        assertEquals(VerifyResult.PRIVILEGE_NOT_GRANTED, verifier.verify(token, "test-channel", "12345", AccessToken.Privileges.kPublishVideoStream));
+        assertEquals(VerifyResult.EXPIRED, verifier.verify(token, "test-channel", "12345", now + 3601),
+                "The join privilege should expire before the token does");
+    }
+
+    @Test
+    public void testVerifyRtmToken() throws Exception {
+        String token = new RtmTokenBuilder().buildToken(appId, appCertificate, "rtm-user", RtmTokenBuilder.Role.Rtm_User,
+                Utils.getTimestamp() + 3600);
+
+        assertEquals(VerifyResult.OK, verifier.verify(token, "rtm-user", ""));
+        assertEquals(VerifyResult.PRIVILEGE_NOT_GRANTED, verifier.verify(token, "rtm-user", "", AccessToken.Privileges.kJoinChannel));
+    }
+
+    @Test
+    public void testDecodeMatchesFromString() {
+        String token = buildToken("test-channel", 0);
+        AccessToken accessToken = new AccessToken(appId, appCertificate, "test-channel", "");
+        assertTrue(accessToken.fromString(token));
+
+        AccessTokenVerifier.Decoded decoded = AccessTokenVerifier.decode(token);
+
+        assertNotNull(decoded, "Token should decode");
+        assertEquals(accessToken.message.salt, decoded.getSalt());
+        assertEquals(accessToken.message.ts, decoded.getTs());
+        assertEquals(accessToken.crcChannelName, decoded.getCrcChannelName());
+        assertEquals(4, decoded.getPrivilegeCount());
+        assertEquals((int) accessToken.message.messages.get(AccessToken.Privileges.kJoinChannel.intValue),
+                decoded.getPrivilegeExpire(AccessToken.Privileges.kJoinChannel));
+    }
+}
@@ -0,0 +1,82 @@
+package io.agora.media;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchVerifierTest {
+    private final String appId = "e7f19b4ccadd45cfa77f472983a8c858";
+    private final String appCertificate = "3c8e689c851244d2bc90c10e93d9d619";
+    private final AccessToken2Verifier verifier = new AccessToken2Verifier(appId, appCertificate);
+
+    private String buildRtcToken(int uid) {
+        return new RtcTokenBuilder2().buildTokenWithUid(appId, appCertificate, "test-channel", uid,
+                RtcTokenBuilder2.Role.ROLE_PUBLISHER, 3600, 3600);
+    }
+
+    @Test
+    public void testBatchKeepsInputOrder() {
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            tokens.add(i % 7 == 0 ? "007invalid" : buildRtcToken(i + 1));
+        }
+        BatchVerifier batch = new BatchVerifier(verifier);
+
+        List<AccessToken2Verifier.Verification> results = batch.verifyAll(tokens);
+        List<VerifyResult> streamed = batch.verifyAll(tokens.stream())
+                .map(AccessToken2Verifier.Verification::getResult)
+                .collect(Collectors.toList());
+
+        assertEquals(tokens.size(), results.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            VerifyResult expected = i % 7 == 0 ? VerifyResult.MALFORMED : VerifyResult.OK;
+            assertEquals(expected, results.get(i).getResult(), "Result " + i + " should match its token");
+            assertEquals(expected, streamed.get(i));
+            if (expected == VerifyResult.OK) {
+                AccessToken2.ServiceRtc service = (AccessToken2.ServiceRtc) results.get(i).getToken().services.get(AccessToken2.SERVICE_TYPE_RTC);
+                assertEquals(String.valueOf(i + 1), service.getUid());
+            }
+        }
+    }
+
+    @Test
+    public void testStreamsRunOnTheConfiguredPool() {
+        // Test parameters
+        ForkJoinPool pool = new ForkJoinPool(2);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        AccessToken2Verifier recordingVerifier = new AccessToken2Verifier(appId, appCertificate) {
+            @Override
+            public Verification verify(String token, int now) {
+                threads.add(Thread.currentThread());
+                return super.verify(token, now);
+            }
+        };
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            tokens.add(buildRtcToken(i + 1));
+        }
+
+        try {
+            List<AccessToken2Verifier.Verification> results = new BatchVerifier(recordingVerifier, pool)
+                    .verifyAll(tokens.stream())
+                    .collect(Collectors.toList());
+
+            // Every token was verified by a worker of the pool the verifier was built with
+            assertEquals(tokens.size(), results.size());
+            assertTrue(results.stream().allMatch(AccessToken2Verifier.Verification::isValid));
+            for (Thread thread : threads) {
+                assertTrue(thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == pool,
+                        "Token should be verified on the configured pool, not on " + thread.getName());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package io.agora.media;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DynamicKey5VerifierTest {
+    private final String appId = "970ca35de60c44645bbae8a215061b33";
+    private final String appCertificate = "5cfd2fd1755d40ecb72977518be15d3b";
+    private final String channel = "7d72365eb983485397e3e3f9d460bdda";
+    private final int ts = 1446455472;
+    private final int salt = 58964981;
+    private final long uid = 2882341273L;
+    private final DynamicKey5Verifier verifier = new DynamicKey5Verifier(appId, appCertificate);
+
+    @Test
+    public void testVerifyAllServiceTypes() throws Exception {
+        int expiredTs = ts + 3600;
+
+        String mediaKey = DynamicKey5.generateMediaChannelKey(appId, appCertificate, channel, ts, salt, uid, expiredTs);
+        String recordingKey = DynamicKey5.generateRecordingKey(appId, appCertificate, channel, ts, salt, uid, expiredTs);
+        String sharingKey = DynamicKey5.generatePublicSharingKey(appId, appCertificate, channel, ts, salt, uid, expiredTs);
+        String permissionKey = DynamicKey5.generateInChannelPermissionKey(appId, appCertificate, channel, ts, salt, uid,
+                expiredTs, DynamicKey5.audioVideoUpload);
+
+        assertEquals(VerifyResult.OK, verifier.verify(mediaKey, channel, uid, ts));
+        assertEquals(VerifyResult.OK, verifier.verify(recordingKey, channel, uid, ts));
+        assertEquals(VerifyResult.OK, verifier.verify(sharingKey, channel, uid, ts));
+        assertEquals(VerifyResult.OK, verifier.verify(permissionKey, channel, uid, ts));
+    }
+
+    @Test
+    public void testRejectMismatchAndExpiry() throws Exception {
+        int expiredTs = ts + 3600;
+        String key = DynamicKey5.generateMediaChannelKey(appId, appCertificate, channel, ts, salt, uid, expiredTs);
+
+        assertEquals(VerifyResult.SIGNATURE_MISMATCH, verifier.verify(key, "other-channel", uid, ts));
+        assertEquals(VerifyResult.SIGNATURE_MISMATCH, verifier.verify(key, channel, 12345, ts));
+        assertEquals(VerifyResult.EXPIRED, verifier.verify(key, channel, uid, expiredTs + 1));
+        assertEquals(VerifyResult.VERSION_MISMATCH, verifier.verify("006" + key.substring(3), channel, uid, ts));
+    }
+
+    @Test
+    public void testUidZeroKeyIsValidForAnyUid() throws Exception {
+        String key = DynamicKey5.generateMediaChannelKey(appId, appCertificate, channel, ts, salt, 0, 0);
+
+        assertEquals(VerifyResult.OK, verifier.verify(key, channel, uid, ts));
+    }
+}
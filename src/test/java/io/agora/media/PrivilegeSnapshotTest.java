@@ -0,0 +1,58 @@
+package io.agora.media;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrivilegeSnapshotTest {
+    private final String appId = "e7f19b4ccadd45cfa77f472983a8c858";
+    private final String appCertificate = "3c8e689c851244d2bc90c10e93d9d619";
+
+    @Test
+    public void testSnapshotOfAccessToken2() {
+        String token = new RtcTokenBuilder2().buildTokenWithUid(appId, appCertificate, "test-channel", 12345,
+                3600, 3600, 600, 0, 1200);
+        AccessToken2 accessToken = new AccessToken2();
+        assertTrue(accessToken.parse(token));
+        int now = accessToken.issueTs;
+
+        PrivilegeSnapshot snapshot = PrivilegeSnapshot.of(accessToken);
+
+        assertTrue(snapshot.appliesTo("test-channel", 12345));
+        assertFalse(snapshot.appliesTo("test-channel", 54321));
+        assertTrue(snapshot.canJoinChannel(now));
+        assertTrue(snapshot.canPublishAudio(now + 599));
+        assertFalse(snapshot.canPublishAudio(now + 600), "Audio privilege should expire after 600 seconds");
+        assertTrue(snapshot.canPublishVideo(now + 3599), "Video privilege of 0 should last as long as the token");
+        assertFalse(snapshot.canJoinChannel(now + 3600));
+        assertEquals(PrivilegeSnapshot.JOIN_CHANNEL | PrivilegeSnapshot.PUBLISH_VIDEO_STREAM | PrivilegeSnapshot.PUBLISH_DATA_STREAM,
+                snapshot.validMask(now + 900));
+    }
+
+    @Test
+    public void testSubscriberCannotPublish() {
+        String token = new RtcTokenBuilder2().buildTokenWithUid(appId, appCertificate, "test-channel", 0,
+                RtcTokenBuilder2.Role.ROLE_SUBSCRIBER, 3600, 3600);
+        AccessToken2 accessToken = new AccessToken2();
+        assertTrue(accessToken.parse(token));
+
+        PrivilegeSnapshot snapshot = PrivilegeSnapshot.of(accessToken);
+
+        assertTrue(snapshot.appliesTo("test-channel", 777), "Token for uid 0 should apply to every user");
+        assertTrue(snapshot.allows(PrivilegeSnapshot.JOIN_CHANNEL, accessToken.issueTs));
+        assertFalse(snapshot.allows(PrivilegeSnapshot.JOIN_CHANNEL | PrivilegeSnapshot.PUBLISH_AUDIO_STREAM, accessToken.issueTs));
+    }
+
+    @Test
+    public void testSnapshotOfAccessToken() {
+        int privilegeTs = Utils.getTimestamp() + 600;
+        AccessToken accessToken = new AccessToken(appId, appCertificate, "test-channel", "12345");
+        accessToken.addPrivilege(AccessToken.Privileges.kJoinChannel, privilegeTs);
+        accessToken.addPrivilege(AccessToken.Privileges.kPublishAudioStream, 0);
+
+        PrivilegeSnapshot snapshot = PrivilegeSnapshot.of(accessToken);
+
+        assertTrue(snapshot.canJoinChannel(privilegeTs - 1));
+        assertFalse(snapshot.canJoinChannel(privilegeTs));
+        assertTrue(snapshot.canPublishAudio(privilegeTs - 1));
+        assertFalse(snapshot.canPublishVideo(privilegeTs - 1));
+    }
+}
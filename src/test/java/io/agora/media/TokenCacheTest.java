@@ -0,0 +1,122 @@
+package io.agora.media;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenCacheTest {
+    private final String appId = "e7f19b4ccadd45cfa77f472983a8c858";
+    private final String appCertificate = "3c8e689c851244d2bc90c10e93d9d619";
+
+    @Test
+    public void testRepeatLookupIsServedFromCache() {
+        TokenCache<AccessToken2> cache = TokenCache.forUnverifiedAccessToken2(100);
+        String token = new RtcTokenBuilder2().buildTokenWithUid(appId, appCertificate, "test-channel", 12345,
+                RtcTokenBuilder2.Role.ROLE_PUBLISHER, 3600, 3600);
+
+        AccessToken2 first = cache.get(token);
+        AccessToken2 second = cache.get(token);
+
+        // The second lookup returns the same parse result without parsing again
+        assertNotNull(first, "Token should parse");
+        assertEquals(first.salt, second.salt, "Repeat lookup should hit the cache");
+        assertEquals(1, cache.stats().hitCount);
+        assertEquals(1, cache.stats().missCount);
+    }
+
+    @Test
+    public void testUnverifiedTokensAreSharedBetweenCallers() {
+        TokenCache<AccessToken2> cache = TokenCache.forUnverifiedAccessToken2(100);
+        String token = new RtcTokenBuilder2().buildTokenWithUid(appId, appCertificate, "test-channel", 12345,
+                RtcTokenBuilder2.Role.ROLE_PUBLISHER, 3600, 3600);
+
+        AccessToken2 first = cache.get(token);
+        AccessToken2 second = cache.get(token);
+
+        // A hit hands out the cached token without decoding or copying it again
+        assertSame(first, second, "Cache hits should share the decoded token");
+        assertEquals(1, cache.stats().hitCount);
+        AccessToken2.ServiceRtc service = (AccessToken2.ServiceRtc) second.services.get(AccessToken2.SERVICE_TYPE_RTC);
+        assertEquals("test-channel", service.getChannelName());
+        assertEquals("12345", service.getUid());
+    }
+
+    @Test
+    public void testInvalidTokenIsNotCached() {
+        TokenCache<AccessToken2> cache = TokenCache.forUnverifiedAccessToken2(100);
+
+        assertNull(cache.get("not-a-token"), "Invalid token should not load");
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.stats().loadFailureCount);
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        TokenCache<String> cache = new TokenCache<>(32, token -> token, value -> Long.MAX_VALUE);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.get("token-" + i);
+        }
+
+        assertTrue(cache.size() <= 32, "Cache should not grow past its maximum size");
+        assertTrue(cache.stats().evictionCount > 0, "Cache should evict old entries");
+    }
+
+    @Test
+    public void testExpiredValueIsNotCached() {
+        TokenCache<String> cache = new TokenCache<>(32, token -> token, value -> 0);
+
+        cache.get("expired");
+
+        assertNull(cache.getIfPresent("expired"), "Expired value should not be cached");
+    }
+
+    @Test
+    public void testRevokedTokensAreNotServedFromCache() {
+        AccessToken2Verifier verifier = new AccessToken2Verifier(appId, appCertificate);
+        RevocationList revocations = new RevocationList(16);
+        ChannelWatermarks watermarks = new ChannelWatermarks(4);
+        verifier.setRevocationList(revocations);
+        verifier.setChannelWatermarks(watermarks);
+        TokenCache<AccessToken2Verifier.Verification> cache = TokenCache.forVerifier(verifier, 100);
+        TokenCache<PrivilegeSnapshot> privileges = TokenCache.forPrivileges(verifier, 100);
+        String revoked = new RtcTokenBuilder2().buildTokenWithUid(appId, appCertificate, "test-channel", 12345,
+                RtcTokenBuilder2.Role.ROLE_PUBLISHER, 3600, 3600);
+        String ended = new RtcTokenBuilder2().buildTokenWithUid(appId, appCertificate, "ended-channel", 12345,
+                RtcTokenBuilder2.Role.ROLE_PUBLISHER, 3600, 3600);
+
+        AccessToken2 token = cache.get(revoked).getToken();
+        int issueTs = cache.get(ended).getToken().issueTs;
+        assertNotNull(privileges.get(revoked));
+        assertNotNull(privileges.get(ended));
+
+        // A revoked token and the tokens of a revoked channel are verified again
+        revocations.revoke(token);
+        assertNull(cache.get(revoked), "Revoked token should not be served from the cache");
+        assertNull(privileges.get(revoked), "Revoked token should not be served from the cache");
+        assertNotNull(cache.get(ended), "Other tokens should still be served");
+        watermarks.revokeChannel(appId, "ended-channel", issueTs + 1);
+        assertNull(cache.getIfPresent(ended), "Tokens of a revoked channel should not be served from the cache");
+        assertNull(cache.get(ended), "Tokens of a revoked channel should not be served from the cache");
+        assertNull(privileges.get(ended), "Tokens of a revoked channel should not be served from the cache");
+    }
+
+    @Test
+    public void testTokensAreNotCachedInFrontOfReplayGuard() {
+        AccessToken2Verifier verifier = new AccessToken2Verifier(appId, appCertificate);
+        TokenCache<AccessToken2Verifier.Verification> cache = TokenCache.forVerifier(verifier, 100);
+        TokenCache<PrivilegeSnapshot> privileges = TokenCache.forPrivileges(verifier, 100);
+        String token = new RtcTokenBuilder2().buildTokenWithUid(appId, appCertificate, "test-channel", 12345,
+                RtcTokenBuilder2.Role.ROLE_PUBLISHER, 3600, 3600);
+        String other = new RtcTokenBuilder2().buildTokenWithUid(appId, appCertificate, "test-channel", 67890,
+                RtcTokenBuilder2.Role.ROLE_PUBLISHER, 3600, 3600);
+        assertNotNull(cache.get(token));
+
+        // Every presentation reaches the guard, including those of tokens cached before it was installed
+        verifier.setReplayGuard(new ReplayGuard(3600, 60));
+        assertNotNull(cache.get(token), "First presentation to the guard should be accepted");
+        assertNull(cache.get(token), "Replay should not be served from the cache");
+        assertNotNull(privileges.get(other), "First presentation to the guard should be accepted");
+        assertNull(privileges.get(other), "Replay should not be served from the cache");
+        assertEquals(0, cache.size());
+        assertEquals(0, privileges.size());
+    }
+}
@@ -0,0 +1,163 @@
+package io.agora.media;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class TokenFactoryTest {
+    private final String appId = "e7f19b4ccadd45cfa77f472983a8c858";
+    private final String appCertificate = "3c8e689c851244d2bc90c10e93d9d619";
+    private final TokenFactory factory = new TokenFactory(appId, appCertificate);
+    private final AccessToken2Verifier verifier = new AccessToken2Verifier(appId, appCertificate);
+
+    @Test
+    public void testMatchesBuilderOutput() throws Exception {
+        // Test parameters
+        int issueTs = Utils.getTimestamp();
+        factory.setClock(() -> issueTs);
+        factory.setSaltSource(() -> 42);
+
+        AccessToken2 accessToken = new AccessToken2(appId, appCertificate, 3600);
+        accessToken.issueTs = issueTs;
+        accessToken.salt = 42;
+        AccessToken2.Service serviceRtc = new AccessToken2.ServiceRtc("test-channel", "12345");
+        serviceRtc.addPrivilegeRtc(AccessToken2.PrivilegeRtc.PRIVILEGE_JOIN_CHANNEL, 600);
+        accessToken.addService(serviceRtc);
+
+        assertEquals(accessToken.build(), factory.buildRtcToken("test-channel", 12345, RtcTokenBuilder2.Role.ROLE_SUBSCRIBER, 3600, 600),
+                "Factory token should be byte-identical to the builder token");
+    }
+
+    @Test
+    public void testEveryServiceVerifies() {
+        String[] tokens = {
+                factory.buildRtcToken("test-channel", "test-user", RtcTokenBuilder2.Role.ROLE_PUBLISHER, 3600, 3600),
+                factory.buildRtcToken("test-channel", "test-user", 3600, 3600, 600, 600, 0),
+                factory.buildRtcRtmToken("test-channel", "test-user", RtcTokenBuilder2.Role.ROLE_PUBLISHER, 3600, 3600),
+                factory.buildRtmToken("test-user", 3600),
+                factory.buildChatUserToken("test-user", 3600),
+                factory.buildChatAppToken(3600),
+                factory.buildApaasRoomUserToken("room", "test-user", (short) 1, 3600),
+                factory.buildApaasUserToken("test-user", 3600),
+                factory.buildApaasAppToken(3600),
+                factory.buildFpaToken(),
+        };
+
+        for (String token : tokens) {
+            assertEquals(VerifyResult.OK, verifier.verify(token).getResult(), "Token should verify: " + token);
+        }
+        assertTrue(factory.getCodecPool().getCreatedCount() <= 2, "Codecs should be reused");
+        assertEquals(0, factory.getCodecPool().getInUseCount(), "Codecs should be returned to the pool");
+    }
+
+    @Test
+    public void testLegacyTokensVerify() {
+        // Test parameters
+        int privilegeTs = Utils.getTimestamp() + 3600;
+        AccessTokenVerifier legacyVerifier = new AccessTokenVerifier(appId, appCertificate);
+
+        String rtc = factory.buildLegacyRtcToken("test-channel", "12345", RtcTokenBuilder.Role.Role_Publisher, privilegeTs);
+        String rtm = factory.buildLegacyRtmToken("test-user", privilegeTs);
+
+        assertEquals(VerifyResult.OK, legacyVerifier.verify(rtc, "test-channel", "12345"));
+        assertEquals(VerifyResult.OK, legacyVerifier.verify(rtm, "test-user", ""));
+    }
+
+    @Test
+    public void testCompressionLevelDoesNotLeakIntoSharedPool() {
+        // Test parameters
+        CodecPool shared = new CodecPool(1);
+        factory.setCodecPool(shared);
+        factory.setCompressionLevel(0);
+
+        String token = factory.buildRtmToken("test-user", 3600);
+        AccessToken2Codec codec = shared.acquire();
+
+        // The codec returns to the pool with the level it was borrowed with
+        assertEquals(VerifyResult.OK, verifier.verify(token).getResult());
+        assertEquals(1, shared.getCreatedCount(), "Codec should be reused");
+        assertEquals(Deflater.DEFAULT_COMPRESSION, codec.getCompressionLevel());
+        shared.release(codec);
+    }
+
+    @Test
+    public void testMetricsAreRecorded() throws Exception {
+        TokenMetricsRecorder recorder = new TokenMetricsRecorder();
+        TokenMetrics.install(recorder);
+        try {
+            String token = factory.buildRtcToken("test-channel", 12345, RtcTokenBuilder2.Role.ROLE_PUBLISHER, 3600, 3600);
+            factory.buildRtmToken("test-user", 3600);
+            factory.buildRtcRtmToken("test-channel", "test-user", RtcTokenBuilder2.Role.ROLE_PUBLISHER, 3600, 3600);
+            assertTrue(new AccessToken2().parse(token), "Token should parse");
+            assertFalse(new AccessToken2().parse("006" + token.substring(3)), "Wrong version should not parse");
+            assertEquals("", new AccessToken2("invalid", appCertificate, 3600).build());
+
+            assertEquals(3, recorder.getBuildCount());
+            assertEquals(1, recorder.getBuildLatency("007", AccessToken2.SERVICE_TYPE_RTC).getCount());
+            assertEquals(1, recorder.getBuildLatency("007", AccessToken2.SERVICE_TYPE_RTM).getCount());
+            assertEquals(1, recorder.getBuildLatency("007", TokenMetrics.MULTIPLE_SERVICES).getCount(),
+                    "RTC and RTM token should be recorded as a multi-service token");
+            assertEquals(1, recorder.getParseLatency("007").getCount());
+            assertEquals(1, recorder.getFailureCount(TokenMetrics.Operation.PARSE, TokenMetrics.FailureReason.VERSION_MISMATCH));
+            assertEquals(1, recorder.getFailureCount(TokenMetrics.Operation.BUILD, TokenMetrics.FailureReason.INVALID_CREDENTIALS));
+            assertTrue(recorder.getCompressionRatio() > 0, "Compression ratio should be recorded");
+        } finally {
+            TokenMetrics.install(null);
+        }
+    }
+
+    @Test
+    public void testStageProfilerSamplesWhenEnabled() throws Exception {
+        StageProfiler.reset();
+        String token = factory.buildRtmToken("test-user", 3600);
+        assertEquals(0, StageProfiler.getHistogram(StageProfiler.Stage.SIGNATURE).getCount(), "Nothing is timed while disabled");
+
+        StageProfiler.enable(1);
+        try {
+            factory.buildRtmToken("test-user", 3600);
+            assertTrue(new AccessToken2().parse(token), "Token should parse");
+        } finally {
+            StageProfiler.disable();
+        }
+
+        for (StageProfiler.Stage stage : StageProfiler.Stage.values()) {
+            assertEquals(1, StageProfiler.getHistogram(stage).getCount(), "Stage should be timed once: " + stage);
+        }
+        StageProfiler.reset();
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+        assumeTrue(FlightRecorder.isAvailable(), "Flight Recorder is not available");
+        Path file = Files.createTempFile("token-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("io.agora.media.TokenBuild").withoutThreshold();
+            recording.enable("io.agora.media.TokenParse").withoutThreshold();
+            recording.start();
+            String token = factory.buildRtcRtmToken("test-channel", "test-user", RtcTokenBuilder2.Role.ROLE_PUBLISHER, 3600, 3600);
+            assertTrue(new AccessToken2().parse(token), "Token should parse");
+            DynamicKey5.generateMediaChannelKey(appId, appCertificate, "test-channel", Utils.getTimestamp(), 42, 12345, 0);
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("io.agora.media.TokenBuild")
+                    && "007".equals(e.getString("version")) && "1,2".equals(e.getString("serviceTypes"))
+                    && e.getInt("tokenLength") == token.length()), "007 build should be recorded");
+            assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("io.agora.media.TokenParse")
+                    && "OK".equals(e.getString("outcome"))), "007 parse should be recorded");
+            assertTrue(events.stream().anyMatch(e -> "005".equals(e.getString("version"))), "Dynamic key build should be recorded");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}